@@ -1,6 +1,5 @@
 package com.abin.mallchat.common.chat.consumer;
 
-import com.abin.mallchat.common.chat.dao.ContactDao;
 import com.abin.mallchat.common.chat.dao.MessageDao;
 import com.abin.mallchat.common.chat.dao.RoomDao;
 import com.abin.mallchat.common.chat.dao.RoomFriendDao;
@@ -10,10 +9,14 @@ import com.abin.mallchat.common.chat.domain.entity.RoomFriend;
 import com.abin.mallchat.common.chat.domain.enums.RoomTypeEnum;
 import com.abin.mallchat.common.chat.domain.vo.response.ChatMessageResp;
 import com.abin.mallchat.common.chat.service.ChatService;
+import com.abin.mallchat.common.chat.service.ContactActivityWriter;
+import com.abin.mallchat.common.chat.service.adapter.MessageAdapter;
 import com.abin.mallchat.common.chat.service.WeChatMsgOperationService;
 import com.abin.mallchat.common.chat.service.cache.GroupMemberCache;
 import com.abin.mallchat.common.chat.service.cache.HotRoomCache;
 import com.abin.mallchat.common.chat.service.cache.RoomCache;
+import com.abin.mallchat.common.chat.service.cache.RoomRecentMsgCache;
+import com.abin.mallchat.common.chat.service.cache.UnreadCountCache;
 import com.abin.mallchat.common.chatai.service.IChatAIService;
 import com.abin.mallchat.common.common.constant.MQConstant;
 import com.abin.mallchat.common.common.domain.dto.MsgSendMessageDTO;
@@ -21,14 +24,18 @@ import com.abin.mallchat.common.user.service.WebSocketService;
 import com.abin.mallchat.common.user.service.adapter.WSAdapter;
 import com.abin.mallchat.common.user.service.cache.UserCache;
 import com.abin.mallchat.common.user.service.impl.PushService;
+import com.abin.mallchat.utils.JsonUtils;
+import org.apache.rocketmq.common.message.MessageExt;
 import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
 import org.apache.rocketmq.spring.core.RocketMQListener;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
 
@@ -39,7 +46,7 @@ import java.util.Objects;
  */
 @RocketMQMessageListener(consumerGroup = MQConstant.SEND_MSG_GROUP, topic = MQConstant.SEND_MSG_TOPIC)
 @Component
-public class MsgSendConsumer implements RocketMQListener<MsgSendMessageDTO> {
+public class MsgSendConsumer implements RocketMQListener<MessageExt> {
     @Autowired
     private WebSocketService webSocketService;
     @Autowired
@@ -63,21 +70,37 @@ public class MsgSendConsumer implements RocketMQListener<MsgSendMessageDTO> {
     @Autowired
     private ApplicationEventPublisher applicationEventPublisher;
     @Autowired
-    private ContactDao contactDao;
+    private ContactActivityWriter contactActivityWriter;
     @Autowired
     private HotRoomCache hotRoomCache;
     @Autowired
     private PushService pushService;
+    @Autowired
+    private UnreadCountCache unreadCountCache;
+    @Autowired
+    private RoomRecentMsgCache roomRecentMsgCache;
 
 
     @Override
-    public void onMessage(MsgSendMessageDTO dto) {
-        Message message = messageDao.getById(dto.getMsgId());
+    public void onMessage(MessageExt messageExt) {
+        MsgSendMessageDTO dto = JsonUtils.toObj(new String(messageExt.getBody(), StandardCharsets.UTF_8), MsgSendMessageDTO.class);
+        Message message;
+        ChatMessageResp msgResp;
+        if (messageExt.getReconsumeTimes() == 0 && Objects.nonNull(dto.getMessage())) {
+            //首次投递直接用发送时的快照，新消息还不会有标记，不用再查库
+            message = dto.getMessage();
+            msgResp = MessageAdapter.buildMsgResp(Collections.singletonList(message), new ArrayList<>(), null).get(0);
+        } else {
+            //重试时消息可能已经被撤回或标记，以数据库为准
+            message = messageDao.getById(dto.getMsgId());
+            msgResp = chatService.getMsgResp(message, null);
+        }
         Room room = roomCache.get(message.getRoomId());
-        ChatMessageResp msgResp = chatService.getMsgResp(message, null);
         //所有房间更新房间最新消息
         roomDao.refreshActiveTime(room.getId(), message.getId(), message.getCreateTime());
         roomCache.delete(room.getId());
+        //追加到房间最近消息缓存
+        roomRecentMsgCache.append(message);
         if (room.isHotRoom()) {//热门群聊推送所有在线的人
             //更新热门群聊时间-redis
             hotRoomCache.refreshActiveTime(room.getId(), message.getCreateTime());
@@ -85,17 +108,24 @@ public class MsgSendConsumer implements RocketMQListener<MsgSendMessageDTO> {
             pushService.sendPushMsg(WSAdapter.buildMsgSend(msgResp));
         } else {
             List<Long> memberUidList = new ArrayList<>();
-            if (Objects.equals(room.getType(), RoomTypeEnum.GROUP.getType())) {//普通群聊推送所有群成员
+            boolean isGroup = Objects.equals(room.getType(), RoomTypeEnum.GROUP.getType());
+            if (isGroup) {//普通群聊推送所有群成员
                 memberUidList = groupMemberCache.getMemberUidList(room.getId());
             } else if (Objects.equals(room.getType(), RoomTypeEnum.FRIEND.getType())) {//单聊对象
                 //对单人推送
                 RoomFriend roomFriend = roomFriendDao.getByRoomId(room.getId());
                 memberUidList = Arrays.asList(roomFriend.getUid1(), roomFriend.getUid2());
             }
-            //更新所有群成员的会话时间
-            contactDao.refreshOrCreateActiveTime(room.getId(), memberUidList, message.getId(), message.getCreateTime());
-            //推送房间成员
-            pushService.sendPushMsg(WSAdapter.buildMsgSend(msgResp), memberUidList);
+            //更新所有群成员的会话时间，短时间内合并成一次批量写入
+            contactActivityWriter.refreshActiveTime(room.getId(), memberUidList, message.getId(), message.getCreateTime());
+            //房间成员未读数加一
+            unreadCountCache.incr(memberUidList, room.getId());
+            //推送房间成员，群聊由各节点的房间索引找到本地在线的连接
+            if (isGroup) {
+                pushService.sendPushRoomMsg(WSAdapter.buildMsgSend(msgResp), room.getId());
+            } else {
+                pushService.sendPushMsg(WSAdapter.buildMsgSend(msgResp), memberUidList);
+            }
         }
     }
 
@@ -61,9 +61,9 @@ public class ChatController {
 
     @PostMapping("/msg")
     @ApiOperation("发送消息")
-    @FrequencyControl(time = 5, count = 3, target = FrequencyControl.Target.UID)
-    @FrequencyControl(time = 30, count = 5, target = FrequencyControl.Target.UID)
-    @FrequencyControl(time = 60, count = 10, target = FrequencyControl.Target.UID)
+    @FrequencyControl(time = 5, count = 3, target = FrequencyControl.Target.UID, approximate = true)
+    @FrequencyControl(time = 30, count = 5, target = FrequencyControl.Target.UID, approximate = true)
+    @FrequencyControl(time = 60, count = 10, target = FrequencyControl.Target.UID, approximate = true)
     public ApiResult<ChatMessageResp> sendMsg(@Valid @RequestBody ChatMessageReq request) {
         Long msgId = chatService.sendMsg(request, RequestHolder.get().getUid());
         //返回完整消息格式，方便前端展示
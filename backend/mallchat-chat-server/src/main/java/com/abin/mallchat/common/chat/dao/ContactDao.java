@@ -42,6 +42,16 @@ public class ContactDao extends ServiceImpl<ContactMapper, Contact> {
                 .count();
     }
 
+    /**
+     * 获取房间所有成员的阅读时间
+     */
+    public List<Contact> getReadTimeList(Long roomId) {
+        return lambdaQuery()
+                .eq(Contact::getRoomId, roomId)
+                .select(Contact::getUid, Contact::getReadTime)
+                .list();
+    }
+
     public Integer getTotalCount(Long roomId) {
         return lambdaQuery()
                 .eq(Contact::getRoomId, roomId)
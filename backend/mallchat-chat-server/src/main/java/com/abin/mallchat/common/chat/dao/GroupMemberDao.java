@@ -72,6 +72,20 @@ public class GroupMemberDao extends ServiceImpl<GroupMemberMapper, GroupMember>
         return list.stream().collect(Collectors.toMap(GroupMember::getUid, GroupMember::getRole));
     }
 
+    /**
+     * 获取用户加入的所有群组id
+     *
+     * @param uid 用户ID
+     * @return 群组ID列表
+     */
+    public List<Long> getGroupIdList(Long uid) {
+        List<GroupMember> list = lambdaQuery()
+                .eq(GroupMember::getUid, uid)
+                .select(GroupMember::getGroupId)
+                .list();
+        return list.stream().map(GroupMember::getGroupId).collect(Collectors.toList());
+    }
+
     public GroupMember getMember(Long groupId, Long uid) {
         return lambdaQuery()
                 .eq(GroupMember::getGroupId, groupId)
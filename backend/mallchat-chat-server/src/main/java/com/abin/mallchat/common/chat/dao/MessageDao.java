@@ -3,6 +3,7 @@ package com.abin.mallchat.common.chat.dao;
 import cn.hutool.core.collection.CollectionUtil;
 import com.abin.mallchat.common.chat.domain.entity.Contact;
 import com.abin.mallchat.common.chat.domain.entity.Message;
+import com.abin.mallchat.common.chat.domain.entity.msg.MessageExtra;
 import com.abin.mallchat.common.chat.domain.enums.MessageStatusEnum;
 import com.abin.mallchat.common.chat.mapper.MessageMapper;
 import com.abin.mallchat.common.common.domain.vo.request.CursorPageBaseReq;
@@ -20,6 +21,7 @@ import org.springframework.stereotype.Service;
 import java.util.Date;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 
 /**
  * <p>
@@ -59,6 +61,39 @@ public class MessageDao extends ServiceImpl<MessageMapper, Message> {
                 .count();
     }
 
+    /**
+     * 房间最近几条消息里最大的房间序号，没有时为0。
+     * 并发提交的事务里id和序号的先后不一定一致，所以多取几条
+     */
+    public long getMaxRoomSeq(Long roomId, int recentCount) {
+        return lambdaQuery()
+                .select(Message::getId, Message::getExtra)
+                .eq(Message::getRoomId, roomId)
+                .orderByDesc(Message::getId)
+                .last("limit " + recentCount)
+                .list().stream()
+                .map(Message::getExtra)
+                .filter(Objects::nonNull)
+                .map(MessageExtra::getRoomSeq)
+                .filter(Objects::nonNull)
+                .max(Long::compare)
+                .orElse(0L);
+    }
+
+    /**
+     * 获取用户发过消息的房间
+     */
+    public List<Long> getRoomIdsByFromUid(Long uid) {
+        return lambdaQuery()
+                .eq(Message::getFromUid, uid)
+                .select(Message::getRoomId)
+                .groupBy(Message::getRoomId)
+                .list()
+                .stream()
+                .map(Message::getRoomId)
+                .collect(Collectors.toList());
+    }
+
     public void invalidByUid(Long uid) {
         lambdaUpdate()
                 .eq(Message::getFromUid, uid)
@@ -0,0 +1,43 @@
+package com.abin.mallchat.common.chat.domain.dto;
+
+import com.abin.mallchat.common.chat.domain.entity.Message;
+import com.abin.mallchat.common.user.domain.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Description: 批量展示消息时预先查好的关联数据，避免每条消息单独查回复消息和用户
+ * 预取过但不存在的id在map里对应null，没预取过的才走loader单独查
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MsgShowContext {
+    /**
+     * 被回复的消息
+     */
+    private Map<Long, Message> replyMsgMap = new HashMap<>();
+    /**
+     * 展示时引用到的用户（被回复人、撤回人）
+     */
+    private Map<Long, User> userMap = new HashMap<>();
+
+    public static MsgShowContext empty() {
+        return new MsgShowContext();
+    }
+
+    public Message getReplyMsg(Long msgId, Function<Long, Message> loader) {
+        return replyMsgMap.containsKey(msgId) ? replyMsgMap.get(msgId) : loader.apply(msgId);
+    }
+
+    public User getUser(Long uid, Function<Long, User> loader) {
+        return userMap.containsKey(uid) ? userMap.get(uid) : loader.apply(uid);
+    }
+}
@@ -0,0 +1,22 @@
+package com.abin.mallchat.common.chat.domain.dto;
+
+import com.abin.mallchat.common.chat.domain.entity.Message;
+import com.abin.mallchat.common.chat.domain.entity.MessageMark;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Description: 房间最近消息缓存的一条，消息和它的有效标记，渲染时再按查看人算出是否点过赞
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RecentMsgDTO {
+    private Message message;
+    private List<MessageMark> marks;
+}
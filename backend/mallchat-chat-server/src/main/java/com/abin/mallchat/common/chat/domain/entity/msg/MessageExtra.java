@@ -44,4 +44,9 @@ public class MessageExtra implements Serializable {
      * 表情图片信息
      */
     private EmojisMsgDTO emojisMsgDTO;
+
+    /**
+     * 房间内的消息序号，用来计算回复消息的间隔条数
+     */
+    private Long roomSeq;
 }
@@ -0,0 +1,111 @@
+package com.abin.mallchat.common.chat.service;
+
+import cn.hutool.core.collection.CollectionUtil;
+import com.abin.mallchat.common.chat.dao.ContactDao;
+import com.abin.mallchat.common.chat.service.cache.ContactPendingCache;
+import com.abin.mallchat.common.common.factory.MyThreadFactory;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: 会话时间合并写入
+ * 每条消息都要把房间所有成员的会话时间upsert一遍，大群里写放大非常严重。
+ * 这里每个房间只保留窗口内最新的一条，到期后每个房间只写一次库。
+ * 窗口内contact表的数据是旧的，未落库的房间会记到每个成员的{@link ContactPendingCache}，查会话列表时修正
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Slf4j
+@Component
+public class ContactActivityWriter {
+    /**
+     * 合并窗口
+     */
+    private static final long FLUSH_INTERVAL_MILLIS = 500;
+
+    @Autowired
+    private ContactDao contactDao;
+    @Autowired
+    private ContactPendingCache contactPendingCache;
+
+    private final ConcurrentHashMap<Long, Activity> pendingMap = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new MyThreadFactory(r -> new Thread(r, "contact-activity-writer")));
+
+    @PostConstruct
+    public void init() {
+        scheduler.scheduleWithFixedDelay(this::flushAll, FLUSH_INTERVAL_MILLIS, FLUSH_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 更新房间成员的会话时间，窗口内同一个房间只保留最新的一条
+     *
+     * @param roomId        房间id
+     * @param memberUidList 房间成员
+     * @param msgId         最新消息id
+     * @param activeTime    最新消息时间
+     */
+    public void refreshActiveTime(Long roomId, List<Long> memberUidList, Long msgId, Date activeTime) {
+        if (CollectionUtil.isEmpty(memberUidList)) {
+            return;
+        }
+        //先让所有节点都能看到成员有未落库的会话时间，再进缓冲区
+        contactPendingCache.add(roomId, memberUidList, activeTime.getTime());
+        pendingMap.merge(roomId, new Activity(memberUidList, msgId, activeTime), Activity::latest);
+    }
+
+    private void flushAll() {
+        try {
+            new ArrayList<>(pendingMap.keySet()).forEach(this::flush);
+        } catch (Exception e) {
+            log.error("会话时间批量写入失败", e);
+        }
+    }
+
+    private void flush(Long roomId) {
+        Activity activity = pendingMap.remove(roomId);
+        if (activity == null) {
+            return;
+        }
+        try {
+            contactDao.refreshOrCreateActiveTime(roomId, activity.memberUidList, activity.msgId, activity.activeTime);
+        } catch (Exception e) {
+            log.error("会话时间写入失败，下个窗口重试 roomId:{}", roomId, e);
+            pendingMap.merge(roomId, activity, Activity::latest);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdown();
+        //停机前把还在窗口里的会话时间写进去
+        new ArrayList<>(pendingMap.keySet()).forEach(this::flush);
+    }
+
+    @AllArgsConstructor
+    private static class Activity {
+        private final List<Long> memberUidList;
+        private final Long msgId;
+        private final Date activeTime;
+
+        /**
+         * 消息乱序到达时保留消息id更大的那条
+         */
+        static Activity latest(Activity old, Activity now) {
+            return now.msgId >= old.msgId ? now : old;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.abin.mallchat.common.chat.service;
+
+import com.abin.mallchat.common.chat.dao.ContactDao;
+import com.abin.mallchat.common.chat.dao.MessageDao;
+import com.abin.mallchat.common.chat.domain.entity.Contact;
+import com.abin.mallchat.common.chat.service.cache.UnreadCountCache;
+import com.abin.mallchat.common.common.exception.BusinessException;
+import com.abin.mallchat.common.common.factory.MyThreadFactory;
+import com.abin.mallchat.common.common.service.LockService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: 未读数校对任务
+ * 未读数是增量维护的，消息重复投递、已读和新消息并发等情况下会有偏差，
+ * 定时对最近查看过会话列表的用户按数据库重新算一遍，把偏差收敛回来。
+ * 每个用户要查多个房间的未读数，用自己的线程跑，不占spring默认的单线程调度器
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Slf4j
+@Component
+public class UnreadCountReconciler {
+    private static final String LOCK_KEY = "unreadCountReconcile";
+    /**
+     * 每轮最多校对的用户数
+     */
+    private static final int BATCH_SIZE = 200;
+    /**
+     * 两轮校对的间隔，秒
+     */
+    private static final long INTERVAL_SECONDS = 60;
+
+    @Autowired
+    private UnreadCountCache unreadCountCache;
+    @Autowired
+    private ContactDao contactDao;
+    @Autowired
+    private MessageDao messageDao;
+    @Autowired
+    private LockService lockService;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new MyThreadFactory(r -> new Thread(r, "unread-count-reconciler")));
+
+    @PostConstruct
+    public void init() {
+        scheduler.scheduleWithFixedDelay(this::reconcile, INTERVAL_SECONDS, INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    public void reconcile() {
+        try {
+            //多个节点只需要一个执行
+            lockService.executeWithLock(LOCK_KEY, 0, TimeUnit.MILLISECONDS, () -> {
+                unreadCountCache.pollReconcile(BATCH_SIZE).forEach(this::reconcile);
+                return null;
+            });
+        } catch (BusinessException e) {
+            log.debug("其他节点正在校对未读数");
+        } catch (Exception e) {
+            log.error("未读数校对失败", e);
+        }
+    }
+
+    private void reconcile(Long uid) {
+        List<Long> roomIds = unreadCountCache.getRoomIds(uid);
+        if (roomIds.isEmpty()) {
+            return;
+        }
+        Map<Long, Integer> unreadCountMap = new HashMap<>();
+        for (Contact contact : contactDao.getByRoomIds(roomIds, uid)) {
+            unreadCountMap.put(contact.getRoomId(), messageDao.getUnReadCount(contact.getRoomId(), contact.getReadTime()));
+        }
+        unreadCountCache.overwrite(uid, unreadCountMap);
+    }
+}
@@ -0,0 +1,30 @@
+package com.abin.mallchat.common.chat.service;
+
+import com.abin.mallchat.common.chat.domain.entity.Message;
+import com.abin.mallchat.common.common.utils.discover.domain.UrlInfo;
+
+import java.util.Map;
+
+/**
+ * Description: 消息链接预览
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+public interface UrlPreviewService {
+
+    /**
+     * 只查缓存，不发起网络请求，发消息时直接带上已经解析过的链接
+     *
+     * @param content 消息内容
+     * @return 链接 -> 预览信息
+     */
+    Map<String, UrlInfo> getCachedUrlContentMap(String content);
+
+    /**
+     * 解析消息里还没有预览的链接，解析到了更新消息并推送给房间成员
+     * 只把解析任务提交到解析线程池就返回，不在调用线程做网络请求或等待结果
+     *
+     * @param snapshot 发送时的消息快照，没有需要解析的链接时不会查库
+     */
+    void enrichMsg(Message snapshot);
+}
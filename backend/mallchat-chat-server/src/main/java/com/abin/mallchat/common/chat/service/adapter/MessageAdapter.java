@@ -1,6 +1,7 @@
 package com.abin.mallchat.common.chat.service.adapter;
 
 import cn.hutool.core.bean.BeanUtil;
+import com.abin.mallchat.common.chat.domain.dto.MsgShowContext;
 import com.abin.mallchat.common.chat.domain.entity.Message;
 import com.abin.mallchat.common.chat.domain.entity.MessageMark;
 import com.abin.mallchat.common.chat.domain.enums.MessageMarkTypeEnum;
@@ -25,35 +26,46 @@ public class MessageAdapter {
     public static final int CAN_CALLBACK_GAP_COUNT = 100;
 
     public static Message buildMsgSave(ChatMessageReq request, Long uid) {
+        Date now = new Date();
 
         return Message.builder()
                 .fromUid(uid)
                 .roomId(request.getRoomId())
                 .type(request.getMsgType())
                 .status(MessageStatusEnum.NORMAL.getStatus())
+                //时间在应用里生成，保存后的实体就是完整的快照，不用再查库
+                .createTime(now)
+                .updateTime(now)
                 .build();
 
     }
 
     public static List<ChatMessageResp> buildMsgResp(List<Message> messages, List<MessageMark> msgMark, Long receiveUid) {
+        return buildMsgResp(messages, msgMark, receiveUid, MsgShowContext.empty());
+    }
+
+    /**
+     * @param context 批量预取好的回复消息和用户
+     */
+    public static List<ChatMessageResp> buildMsgResp(List<Message> messages, List<MessageMark> msgMark, Long receiveUid, MsgShowContext context) {
         Map<Long, List<MessageMark>> markMap = msgMark.stream().collect(Collectors.groupingBy(MessageMark::getMsgId));
         return messages.stream().map(a -> {
             ChatMessageResp resp = new ChatMessageResp();
             resp.setFromUser(buildFromUser(a.getFromUid()));
-            resp.setMessage(buildMessage(a, markMap.getOrDefault(a.getId(), new ArrayList<>()), receiveUid));
+            resp.setMessage(buildMessage(a, markMap.getOrDefault(a.getId(), new ArrayList<>()), receiveUid, context));
             return resp;
         })
                 .sorted(Comparator.comparing(a -> a.getMessage().getSendTime()))//帮前端排好序，更方便它展示
                 .collect(Collectors.toList());
     }
 
-    private static ChatMessageResp.Message buildMessage(Message message, List<MessageMark> marks, Long receiveUid) {
+    private static ChatMessageResp.Message buildMessage(Message message, List<MessageMark> marks, Long receiveUid, MsgShowContext context) {
         ChatMessageResp.Message messageVO = new ChatMessageResp.Message();
         BeanUtil.copyProperties(message, messageVO);
         messageVO.setSendTime(message.getCreateTime());
         AbstractMsgHandler<?> msgHandler = MsgHandlerFactory.getStrategyNoNull(message.getType());
         if (Objects.nonNull(msgHandler)) {
-            messageVO.setBody(msgHandler.showMsg(message));
+            messageVO.setBody(msgHandler.showMsg(message, context));
         }
         //消息标记
         messageVO.setMessageMark(buildMsgMark(marks, receiveUid));
@@ -0,0 +1,85 @@
+package com.abin.mallchat.common.chat.service.cache;
+
+import cn.hutool.core.collection.CollectionUtil;
+import com.abin.mallchat.common.common.constant.RedisKey;
+import com.abin.mallchat.common.common.utils.RedisUtils;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Description: 会话时间还没落库的房间
+ * 会话时间是攒一小段时间再批量写库的，窗口内contact表里的active_time是旧的，
+ * 这里给每个成员记一个zset，member是房间，score是房间最新的会话时间，查会话列表时只读自己的，所有节点都能看到。
+ * 落库后不删除，库里的时间追上来之后这条记录就不起作用了，超过{@link #EXPIRE_MILLIS}自然清理
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Component
+public class ContactPendingCache {
+    /**
+     * 超过这个时间的记录视为已经落库，或者写库节点已经宕机，不再参与修正
+     */
+    public static final long EXPIRE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    /**
+     * 乱序的旧时间不覆盖新时间，顺带清理过期的房间并刷新过期时间
+     * ARGV: roomId, 会话时间, 过期的时间点, 过期时间(毫秒)
+     */
+    private static final RedisScript<Long> ADD_SCRIPT = new DefaultRedisScript<>(
+            "for i=1,#KEYS do \n" +
+                    "  local score=redis.call('ZSCORE',KEYS[i],ARGV[1]) \n" +
+                    "  if (not score) or tonumber(score)<tonumber(ARGV[2]) then \n" +
+                    "    redis.call('ZADD',KEYS[i],ARGV[2],ARGV[1]) \n" +
+                    "  end \n" +
+                    "  redis.call('ZREMRANGEBYSCORE',KEYS[i],0,ARGV[3]) \n" +
+                    "  redis.call('PEXPIRE',KEYS[i],ARGV[4]) \n" +
+                    "end \n" +
+                    "return #KEYS ", Long.class);
+
+    private static String getKey(Long uid) {
+        return RedisKey.getKey(RedisKey.CONTACT_PENDING_ZET, uid);
+    }
+
+    /**
+     * 给房间成员记录房间最新的会话时间
+     */
+    public void add(Long roomId, List<Long> uidList, long activeTime) {
+        if (CollectionUtil.isEmpty(uidList)) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        List<String> keys = uidList.stream().map(ContactPendingCache::getKey).collect(Collectors.toList());
+        RedisUtils.executeBatch(ADD_SCRIPT, keys, roomId.toString(), String.valueOf(activeTime),
+                String.valueOf(now - EXPIRE_MILLIS), String.valueOf(EXPIRE_MILLIS));
+    }
+
+    /**
+     * 获取用户还没落库的房间及其最新会话时间
+     *
+     * @return roomId -> activeTime
+     */
+    public Map<Long, Long> getPendingMap(Long uid) {
+        long now = System.currentTimeMillis();
+        Set<ZSetOperations.TypedTuple<String>> tuples = RedisUtils.zRangeByScoreWithScores(getKey(uid), (double) (now - EXPIRE_MILLIS), null);
+        Map<Long, Long> pendingMap = new HashMap<>();
+        if (Objects.isNull(tuples)) {
+            return pendingMap;
+        }
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            if (Objects.nonNull(tuple.getValue()) && Objects.nonNull(tuple.getScore())) {
+                pendingMap.put(Long.parseLong(tuple.getValue()), tuple.getScore().longValue());
+            }
+        }
+        return pendingMap;
+    }
+}
@@ -6,10 +6,16 @@ import com.abin.mallchat.common.user.dao.BlackDao;
 import com.abin.mallchat.common.user.dao.RoleDao;
 import com.abin.mallchat.common.user.dao.UserDao;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
 /**
  * Description: 消息相关缓存
  * Author: <a href="https://github.com/zongzibinbin">abin</a>
@@ -26,6 +32,8 @@ public class MsgCache {
     private RoleDao roleDao;
     @Autowired
     private MessageDao messageDao;
+    @Autowired
+    private CacheManager cacheManager;
 
     @Cacheable(cacheNames = "msg", key = "'msg'+#msgId")
     public Message getMsg(Long msgId) {
@@ -36,4 +44,34 @@ public class MsgCache {
     public Message evictMsg(Long msgId) {
         return null;
     }
+
+    /**
+     * 批量获取消息，和{@link #getMsg(Long)}用同一份缓存，没命中的一次查库再放回缓存
+     *
+     * @return msgId -> 消息，不存在的消息对应null
+     */
+    public Map<Long, Message> getMsgBatch(List<Long> msgIds) {
+        Cache cache = cacheManager.getCache("msg");
+        Map<Long, Message> result = new HashMap<>();
+        List<Long> missIds = new ArrayList<>();
+        for (Long msgId : msgIds) {
+            Cache.ValueWrapper wrapper = cache.get("msg" + msgId);
+            if (Objects.isNull(wrapper)) {
+                missIds.add(msgId);
+            } else {
+                result.put(msgId, (Message) wrapper.get());
+            }
+        }
+        if (missIds.isEmpty()) {
+            return result;
+        }
+        Map<Long, Message> loaded = messageDao.listByIds(missIds).stream()
+                .collect(Collectors.toMap(Message::getId, Function.identity()));
+        for (Long msgId : missIds) {
+            Message msg = loaded.get(msgId);
+            cache.put("msg" + msgId, msg);
+            result.put(msgId, msg);
+        }
+        return result;
+    }
 }
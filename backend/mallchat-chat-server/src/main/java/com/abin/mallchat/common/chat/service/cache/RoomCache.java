@@ -16,6 +16,7 @@ import java.util.stream.Collectors;
 
 /**
  * Description: 房间基本信息的缓存
+ * 房间的最新消息和活跃时间每条消息都会变，每次都要删缓存，不开本地缓存
  * Author: <a href="https://github.com/zongzibinbin">abin</a>
  * Date: 2023-06-10
  */
@@ -32,6 +32,11 @@ public class RoomFriendCache extends AbstractRedisStringCache<Long, RoomFriend>
         return 5 * 60L;
     }
 
+    @Override
+    protected Long getLocalExpireSeconds() {
+        return 60L;
+    }
+
     @Override
     protected Map<Long, RoomFriend> load(List<Long> roomIds) {
         List<RoomFriend> roomGroups = roomFriendDao.listByRoomIds(roomIds);
@@ -32,6 +32,11 @@ public class RoomGroupCache extends AbstractRedisStringCache<Long, RoomGroup> {
         return 5 * 60L;
     }
 
+    @Override
+    protected Long getLocalExpireSeconds() {
+        return 60L;
+    }
+
     @Override
     protected Map<Long, RoomGroup> load(List<Long> roomIds) {
         List<RoomGroup> roomGroups = roomGroupDao.listByRoomIds(roomIds);
@@ -0,0 +1,90 @@
+package com.abin.mallchat.common.chat.service.cache;
+
+import com.abin.mallchat.common.chat.dao.MessageDao;
+import com.abin.mallchat.common.common.constant.RedisKey;
+import com.abin.mallchat.common.common.utils.RedisUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: 房间内的消息序号，两条消息的序号相减就是间隔条数，不用按id区间count
+ * 序号只放在redis里，key丢了（清空、主从切换、淘汰）时从库里最近的消息接着往下发，不会从1重新开始；
+ * 拿了序号但事务回滚的记到作废集合里，算间隔时减掉
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Component
+public class RoomMsgSeqCache {
+    /**
+     * 补种序号时看房间最近多少条消息
+     */
+    private static final int SEED_RECENT_COUNT = 100;
+    /**
+     * 作废序号保留的时间，更早的作废序号不再扣除，间隔条数最多偏大几条
+     */
+    private static final long RELEASED_EXPIRE_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    /**
+     * key存在才自增，不存在返回nil，由调用方从库里补种
+     */
+    private static final RedisScript<Long> INCR_IF_PRESENT_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS',KEYS[1])==1 then \n" +
+                    "  return redis.call('INCR',KEYS[1]) \n" +
+                    "end \n" +
+                    "return false ", Long.class);
+
+    /**
+     * 没有别人先补种时用库里的序号补种，再自增
+     * ARGV: 库里最大的序号
+     */
+    private static final RedisScript<Long> SEED_AND_INCR_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('SET',KEYS[1],ARGV[1],'NX') \n" +
+                    "return redis.call('INCR',KEYS[1]) ", Long.class);
+
+    @Autowired
+    private MessageDao messageDao;
+
+    private static String getKey(Long roomId) {
+        return RedisKey.getKey(RedisKey.ROOM_MSG_SEQ, roomId);
+    }
+
+    private static String getReleasedKey(Long roomId) {
+        return RedisKey.getKey(RedisKey.ROOM_MSG_SEQ_RELEASED_ZET, roomId);
+    }
+
+    /**
+     * 获取房间的下一个消息序号
+     */
+    public Long next(Long roomId) {
+        String key = getKey(roomId);
+        Long seq = RedisUtils.execute(INCR_IF_PRESENT_SCRIPT, Collections.singletonList(key));
+        if (Objects.nonNull(seq)) {
+            return seq;
+        }
+        long maxSeq = messageDao.getMaxRoomSeq(roomId, SEED_RECENT_COUNT);
+        return RedisUtils.execute(SEED_AND_INCR_SCRIPT, Collections.singletonList(key), String.valueOf(maxSeq));
+    }
+
+    /**
+     * 作废一个没有落库的序号
+     */
+    public void release(Long roomId, Long seq) {
+        String key = getReleasedKey(roomId);
+        RedisUtils.zAdd(key, seq.toString(), seq);
+        RedisUtils.expire(key, RELEASED_EXPIRE_SECONDS);
+    }
+
+    /**
+     * (fromSeq, toSeq)之间作废的序号个数
+     */
+    public long countReleased(Long roomId, Long fromSeq, Long toSeq) {
+        Long count = RedisUtils.zCount(getReleasedKey(roomId), fromSeq + 1, toSeq - 1);
+        return Objects.isNull(count) ? 0 : count;
+    }
+}
@@ -0,0 +1,202 @@
+package com.abin.mallchat.common.chat.service.cache;
+
+import com.abin.mallchat.common.chat.domain.dto.RecentMsgDTO;
+import com.abin.mallchat.common.chat.domain.entity.Message;
+import com.abin.mallchat.common.common.constant.RedisKey;
+import com.abin.mallchat.common.common.utils.RedisUtils;
+import com.abin.mallchat.utils.JsonUtils;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Description: 房间最近的消息
+ * 每个房间一个zset，score是消息id，最多保留最新的{@link #MAX_SIZE}条，发消息时追加（同一个id只追加一次），撤回、标记等修改时整体失效，
+ * 下次打开房间时重新从数据库加载。失效、以及缓存不存在时来的新消息都会把版本号加一，
+ * 和从数据库加载并发时加载结果不会写入，不会把旧数据或者漏掉新消息的数据写回去。
+ * score为0的哨兵表示缓存里已经是房间的全部消息
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Component
+public class RoomRecentMsgCache {
+    /**
+     * 每个房间缓存的消息条数
+     */
+    public static final int MAX_SIZE = 100;
+
+    private static final long EXPIRE_SECONDS = TimeUnit.HOURS.toSeconds(1);
+    /**
+     * 版本号只在加载期间有用，每次加一时续期，长时间没人动的房间自然清理
+     */
+    private static final long VERSION_EXPIRE_SECONDS = TimeUnit.DAYS.toSeconds(1);
+
+    private static final String SENTINEL = "0";
+
+    /**
+     * 缓存存在并且还没有这条消息时追加，并裁剪到最大条数。
+     * member是消息的json，同一条消息重放时内容可能和失效重建后加载的不一样（标记、链接预览），要按score去重。
+     * 缓存不存在时把版本号加一，正在加载的可能是这条消息提交前读的库，不能写入
+     * KEYS: 缓存, 版本号  ARGV: 消息id, 消息json, 最大条数, 版本号过期时间
+     */
+    private static final RedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS',KEYS[1])==0 then \n" +
+                    "  redis.call('INCR',KEYS[2]) \n" +
+                    "  redis.call('EXPIRE',KEYS[2],ARGV[4]) \n" +
+                    "  return 0 \n" +
+                    "end \n" +
+                    "if redis.call('ZCOUNT',KEYS[1],ARGV[1],ARGV[1])==0 then \n" +
+                    "  redis.call('ZADD',KEYS[1],ARGV[1],ARGV[2]) \n" +
+                    "  redis.call('ZREMRANGEBYRANK',KEYS[1],0,-(tonumber(ARGV[3])+1)) \n" +
+                    "  return 1 \n" +
+                    "end \n" +
+                    "return 0 ", Long.class);
+
+    /**
+     * 版本号没变（加载期间没有失效）并且缓存不存在时才写入
+     * ARGV: 期望的版本号, 过期时间, 之后每两个参数为score和member
+     */
+    private static final RedisScript<Long> INIT_SCRIPT = new DefaultRedisScript<>(
+            "local version=redis.call('GET',KEYS[2]) or '0' \n" +
+                    "if version~=ARGV[1] or redis.call('EXISTS',KEYS[1])==1 then \n" +
+                    "  return 0 \n" +
+                    "end \n" +
+                    "for i=3,#ARGV,2 do \n" +
+                    "  redis.call('ZADD',KEYS[1],ARGV[i],ARGV[i+1]) \n" +
+                    "end \n" +
+                    "redis.call('EXPIRE',KEYS[1],ARGV[2]) \n" +
+                    "return 1 ", Long.class);
+
+    /**
+     * 版本号加一并删除缓存
+     * KEYS: 缓存, 版本号  ARGV: 版本号过期时间
+     */
+    private static final RedisScript<Long> EVICT_SCRIPT = new DefaultRedisScript<>(
+            "redis.call('INCR',KEYS[2]) \n" +
+                    "redis.call('EXPIRE',KEYS[2],ARGV[1]) \n" +
+                    "return redis.call('DEL',KEYS[1]) ", Long.class);
+
+    private static String getKey(Long roomId) {
+        return RedisKey.getKey(RedisKey.ROOM_RECENT_MSG_ZET, roomId);
+    }
+
+    private static String getVersionKey(Long roomId) {
+        return RedisKey.getKey(RedisKey.ROOM_RECENT_MSG_VERSION, roomId);
+    }
+
+    /**
+     * 获取房间最近的消息里id小于upper的一页，只读这一页，不读整个zset
+     *
+     * @param upper 消息id的上界(不含)
+     * @param limit 最多取几条
+     * @return 缓存不存在返回null
+     */
+    public Snapshot get(Long roomId, long upper, int limit) {
+        String key = getKey(roomId);
+        //多取一个，不够一页时能带上哨兵
+        Set<ZSetOperations.TypedTuple<String>> tuples = RedisUtils.zReverseRangeByScoreWithScores(key, 0, upper - 1, 0, limit + 1);
+        Long maxMsgId;
+        if (upper == Long.MAX_VALUE) {
+            if (Objects.isNull(tuples) || tuples.isEmpty()) {
+                return null;
+            }
+            maxMsgId = getMsgId(tuples.iterator().next());
+        } else {
+            Set<ZSetOperations.TypedTuple<String>> top = RedisUtils.zReverseRangeByScoreWithScores(key, 0, Double.MAX_VALUE, 0, 1);
+            if (Objects.isNull(top) || top.isEmpty()) {
+                return null;
+            }
+            maxMsgId = getMsgId(top.iterator().next());
+        }
+        List<RecentMsgDTO> list = new ArrayList<>();
+        boolean complete = false;
+        for (ZSetOperations.TypedTuple<String> tuple : tuples) {
+            if (SENTINEL.equals(tuple.getValue())) {
+                complete = true;
+            } else if (list.size() < limit) {
+                list.add(JsonUtils.toObj(tuple.getValue(), RecentMsgDTO.class));
+            }
+        }
+        return new Snapshot(list, complete, maxMsgId);
+    }
+
+    private static Long getMsgId(ZSetOperations.TypedTuple<String> tuple) {
+        return SENTINEL.equals(tuple.getValue()) ? null : tuple.getScore().longValue();
+    }
+
+    /**
+     * 当前版本号，从数据库加载前先取，写入时校验
+     */
+    public String getVersion(Long roomId) {
+        return Optional.ofNullable(RedisUtils.get(getVersionKey(roomId), Long.class)).map(String::valueOf).orElse("0");
+    }
+
+    /**
+     * 写入从数据库加载的最近消息
+     *
+     * @param list     按消息id倒序
+     * @param complete 是否已经是房间的全部消息
+     * @param version  加载前取到的版本号
+     */
+    public void init(Long roomId, List<RecentMsgDTO> list, boolean complete, String version) {
+        List<String> args = new ArrayList<>();
+        args.add(version);
+        args.add(String.valueOf(EXPIRE_SECONDS));
+        if (complete) {
+            args.add(SENTINEL);
+            args.add(SENTINEL);
+        }
+        for (RecentMsgDTO dto : list) {
+            args.add(dto.getMessage().getId().toString());
+            args.add(JsonUtils.toStr(dto));
+        }
+        RedisUtils.execute(INIT_SCRIPT, Arrays.asList(getKey(roomId), getVersionKey(roomId)), args.toArray());
+    }
+
+    /**
+     * 房间发了新消息，缓存存在时追加，不存在时让正在进行的加载作废
+     */
+    public void append(Message message) {
+        RecentMsgDTO dto = new RecentMsgDTO(message, new ArrayList<>());
+        Long roomId = message.getRoomId();
+        RedisUtils.execute(APPEND_SCRIPT, Arrays.asList(getKey(roomId), getVersionKey(roomId)),
+                message.getId().toString(), JsonUtils.toStr(dto), String.valueOf(MAX_SIZE), String.valueOf(VERSION_EXPIRE_SECONDS));
+    }
+
+    /**
+     * 房间里的消息被修改，整体失效
+     */
+    public void evict(Long roomId) {
+        RedisUtils.execute(EVICT_SCRIPT, Arrays.asList(getKey(roomId), getVersionKey(roomId)), String.valueOf(VERSION_EXPIRE_SECONDS));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+        /**
+         * 按消息id倒序
+         */
+        private final List<RecentMsgDTO> list;
+        /**
+         * 是否已经是房间的全部消息
+         */
+        private final boolean complete;
+        /**
+         * 缓存里最新的消息id，缓存里没有消息时为null
+         */
+        private final Long maxMsgId;
+
+        /**
+         * 从数据库加载的完整列表
+         */
+        public Snapshot(List<RecentMsgDTO> list, boolean complete) {
+            this(list, complete, list.isEmpty() ? null : list.get(0).getMessage().getId());
+        }
+    }
+}
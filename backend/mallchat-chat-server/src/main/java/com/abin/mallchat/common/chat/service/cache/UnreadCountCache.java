@@ -0,0 +1,120 @@
+package com.abin.mallchat.common.chat.service.cache;
+
+import cn.hutool.core.collection.CollectionUtil;
+import com.abin.mallchat.common.common.constant.RedisKey;
+import com.abin.mallchat.common.common.utils.RedisUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Description: 会话未读数
+ * 每个用户一个hash，field是房间id，发消息时给房间成员累加，已读时清零。
+ * field不存在说明还没初始化，由读的时候回源数据库，累加只作用在已经初始化的field上，避免从0开始算少了
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Component
+public class UnreadCountCache {
+    /**
+     * 不活跃的用户未读数自动过期，下次查看时重新回源
+     */
+    private static final long EXPIRE_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    private static String getKey(Long uid) {
+        return RedisKey.getKey(RedisKey.UNREAD_COUNT_HASH, uid);
+    }
+
+    /**
+     * 房间来了新消息，成员未读数加一
+     */
+    public void incr(List<Long> uidList, Long roomId) {
+        if (CollectionUtil.isEmpty(uidList)) {
+            return;
+        }
+        List<String> keys = uidList.stream().map(UnreadCountCache::getKey).collect(Collectors.toList());
+        RedisUtils.hincrIfPresentBatch(keys, roomId.toString(), 1);
+    }
+
+    /**
+     * 批量获取未读数
+     *
+     * @return roomId -> 未读数，还没初始化的房间不在结果里
+     */
+    public Map<Long, Integer> getBatch(Long uid, List<Long> roomIds) {
+        Map<Long, Integer> result = new HashMap<>();
+        if (CollectionUtil.isEmpty(roomIds)) {
+            return result;
+        }
+        List<String> fields = roomIds.stream().map(Object::toString).collect(Collectors.toList());
+        List<String> values = RedisUtils.hmultiGet(getKey(uid), fields);
+        for (int i = 0; i < roomIds.size(); i++) {
+            if (Objects.nonNull(values.get(i))) {
+                result.put(roomIds.get(i), Integer.parseInt(values.get(i)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 获取已经初始化了未读数的房间
+     */
+    public List<Long> getRoomIds(Long uid) {
+        return RedisUtils.hmget(getKey(uid)).keySet().stream()
+                .map(field -> Long.parseLong(field.toString()))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 初始化回源查出的未读数，已经存在的不覆盖
+     */
+    public void init(Long uid, Map<Long, Integer> unreadCountMap) {
+        if (unreadCountMap.isEmpty()) {
+            return;
+        }
+        String key = getKey(uid);
+        unreadCountMap.forEach((roomId, count) -> RedisUtils.hsetIfAbsent(key, roomId.toString(), count));
+        RedisUtils.expire(key, EXPIRE_SECONDS);
+    }
+
+    /**
+     * 用校对结果覆盖未读数
+     */
+    public void overwrite(Long uid, Map<Long, Integer> unreadCountMap) {
+        if (unreadCountMap.isEmpty()) {
+            return;
+        }
+        Map<String, Object> map = new HashMap<>();
+        unreadCountMap.forEach((roomId, count) -> map.put(roomId.toString(), count.toString()));
+        RedisUtils.hmset(getKey(uid), map, EXPIRE_SECONDS);
+    }
+
+    /**
+     * 已读，未读数清零
+     */
+    public void reset(Long uid, Long roomId) {
+        RedisUtils.hset(getKey(uid), roomId.toString(), "0", EXPIRE_SECONDS);
+    }
+
+    /**
+     * 记录最近查看过会话列表的用户，由校对任务修正未读数
+     */
+    public void markReconcile(Long uid) {
+        RedisUtils.zAdd(RedisKey.getKey(RedisKey.UNREAD_RECONCILE_ZET), uid, System.currentTimeMillis());
+    }
+
+    /**
+     * 取出最早标记的一批待校对用户
+     */
+    public List<Long> pollReconcile(int count) {
+        String key = RedisKey.getKey(RedisKey.UNREAD_RECONCILE_ZET);
+        Set<String> uids = RedisUtils.zRange(key, 0, count - 1);
+        if (CollectionUtil.isEmpty(uids)) {
+            return new ArrayList<>();
+        }
+        RedisUtils.zRemove(key, uids.toArray());
+        return uids.stream().map(Long::parseLong).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,70 @@
+package com.abin.mallchat.common.chat.service.cache;
+
+import cn.hutool.crypto.SecureUtil;
+import com.abin.mallchat.common.common.constant.RedisKey;
+import com.abin.mallchat.common.common.utils.RedisUtils;
+import com.abin.mallchat.common.common.utils.discover.domain.UrlInfo;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Collectors;
+
+/**
+ * Description: 链接预览缓存，所有节点共享
+ * 解析失败的链接也缓存一个空对象，短时间内不再重复请求第三方网站
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Component
+public class UrlInfoCache {
+
+    /**
+     * 解析成功的缓存一天
+     */
+    private static final long EXPIRE_SECONDS = 24 * 60 * 60;
+    /**
+     * 解析失败的缓存十分钟
+     */
+    private static final long NEGATIVE_EXPIRE_SECONDS = 10 * 60;
+
+    /**
+     * 批量获取，没有缓存的链接不在返回结果里，解析失败的链接返回空对象
+     *
+     * @see #isEmpty(UrlInfo)
+     */
+    public Map<String, UrlInfo> getBatch(List<String> urlList) {
+        List<String> keys = urlList.stream().map(this::getKey).collect(Collectors.toList());
+        List<UrlInfo> valueList = RedisUtils.mget(keys, UrlInfo.class);
+        Map<String, UrlInfo> result = new HashMap<>();
+        for (int i = 0; i < urlList.size(); i++) {
+            if (Objects.nonNull(valueList.get(i))) {
+                result.put(urlList.get(i), valueList.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param urlInfo 为空表示解析失败
+     */
+    public void put(String url, UrlInfo urlInfo) {
+        if (isEmpty(urlInfo)) {
+            RedisUtils.set(getKey(url), new UrlInfo(), NEGATIVE_EXPIRE_SECONDS);
+        } else {
+            RedisUtils.set(getKey(url), urlInfo, EXPIRE_SECONDS);
+        }
+    }
+
+    public static boolean isEmpty(UrlInfo urlInfo) {
+        return Objects.isNull(urlInfo)
+                || (Objects.isNull(urlInfo.getTitle()) && Objects.isNull(urlInfo.getDescription()) && Objects.isNull(urlInfo.getImage()));
+    }
+
+    private String getKey(String url) {
+        //链接可能很长，key用摘要
+        return RedisKey.getKey(RedisKey.URL_INFO_STRING, SecureUtil.md5(url));
+    }
+}
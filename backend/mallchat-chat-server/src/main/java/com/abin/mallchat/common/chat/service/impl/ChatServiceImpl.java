@@ -7,6 +7,8 @@ import cn.hutool.core.date.DateUtil;
 import cn.hutool.core.lang.Pair;
 import com.abin.mallchat.common.chat.dao.*;
 import com.abin.mallchat.common.chat.domain.dto.MsgReadInfoDTO;
+import com.abin.mallchat.common.chat.domain.dto.MsgShowContext;
+import com.abin.mallchat.common.chat.domain.dto.RecentMsgDTO;
 import com.abin.mallchat.common.chat.domain.entity.*;
 import com.abin.mallchat.common.chat.domain.enums.MessageMarkActTypeEnum;
 import com.abin.mallchat.common.chat.domain.enums.MessageTypeEnum;
@@ -23,6 +25,9 @@ import com.abin.mallchat.common.chat.service.adapter.MessageAdapter;
 import com.abin.mallchat.common.chat.service.adapter.RoomAdapter;
 import com.abin.mallchat.common.chat.service.cache.RoomCache;
 import com.abin.mallchat.common.chat.service.cache.RoomGroupCache;
+import com.abin.mallchat.common.chat.service.cache.MsgCache;
+import com.abin.mallchat.common.chat.service.cache.RoomRecentMsgCache;
+import com.abin.mallchat.common.chat.service.cache.UnreadCountCache;
 import com.abin.mallchat.common.chat.service.helper.ChatMemberHelper;
 import com.abin.mallchat.common.chat.service.strategy.mark.AbstractMsgMarkStrategy;
 import com.abin.mallchat.common.chat.service.strategy.mark.MsgMarkFactory;
@@ -42,6 +47,7 @@ import com.abin.mallchat.common.user.domain.enums.RoleEnum;
 import com.abin.mallchat.common.user.domain.vo.response.ws.ChatMemberResp;
 import com.abin.mallchat.common.user.service.IRoleService;
 import com.abin.mallchat.common.user.service.cache.UserCache;
+import com.abin.mallchat.common.user.service.cache.UserInfoCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -95,6 +101,14 @@ public class ChatServiceImpl implements ChatService {
     private RoomGroupCache roomGroupCache;
     @Autowired
     private RoomGroupDao roomGroupDao;
+    @Autowired
+    private UnreadCountCache unreadCountCache;
+    @Autowired
+    private RoomRecentMsgCache roomRecentMsgCache;
+    @Autowired
+    private MsgCache msgCache;
+    @Autowired
+    private UserInfoCache userInfoCache;
 
     /**
      * 发送消息
@@ -104,10 +118,10 @@ public class ChatServiceImpl implements ChatService {
     public Long sendMsg(ChatMessageReq request, Long uid) {
         check(request, uid);
         AbstractMsgHandler<?> msgHandler = MsgHandlerFactory.getStrategyNoNull(request.getMsgType());
-        Long msgId = msgHandler.checkAndSaveMsg(request, uid);
-        //发布消息发送事件
-        applicationEventPublisher.publishEvent(new MessageSendEvent(this, msgId));
-        return msgId;
+        Message message = msgHandler.checkAndSaveMsg(request, uid);
+        //发布消息发送事件，带上消息快照
+        applicationEventPublisher.publishEvent(new MessageSendEvent(this, message));
+        return message.getId();
     }
 
     private void check(ChatMessageReq request, Long uid) {
@@ -176,6 +190,11 @@ public class ChatServiceImpl implements ChatService {
     public CursorPageBaseResp<ChatMessageResp> getMsgPage(ChatMessagePageReq request, Long receiveUid) {
         //用最后一条消息id，来限制被踢出的人能看见的最大一条消息
         Long lastMsgId = getLastMsgId(request.getRoomId(), receiveUid);
+        //优先走房间最近消息缓存，打开房间的第一页基本都能命中
+        CursorPageBaseResp<ChatMessageResp> recentPage = getRecentMsgPage(request, lastMsgId, receiveUid);
+        if (Objects.nonNull(recentPage)) {
+            return recentPage;
+        }
         CursorPageBaseResp<Message> cursorPage = messageDao.getCursorPage(request.getRoomId(), request, lastMsgId);
         if (cursorPage.isEmpty()) {
             return CursorPageBaseResp.empty();
@@ -183,6 +202,68 @@ public class ChatServiceImpl implements ChatService {
         return CursorPageBaseResp.init(cursorPage, getMsgRespBatch(cursorPage.getList(), receiveUid));
     }
 
+    /**
+     * 从房间最近消息缓存里取一页，缓存里的数据不够这一页时返回null，由调用方查库
+     */
+    private CursorPageBaseResp<ChatMessageResp> getRecentMsgPage(ChatMessagePageReq request, Long lastMsgId, Long receiveUid) {
+        Long roomId = request.getRoomId();
+        Room room = roomCache.get(roomId);
+        //游标和被踢出的人能看到的最后一条消息，取更小的作为上界
+        long upper = request.isFirstPage() ? Long.MAX_VALUE : Long.parseLong(request.getCursor());
+        if (Objects.nonNull(lastMsgId)) {
+            upper = Math.min(upper, lastMsgId + 1);
+        }
+        RoomRecentMsgCache.Snapshot snapshot = roomRecentMsgCache.get(roomId, upper, request.getPageSize());
+        //缓存的最新消息比房间最新消息旧，说明缓存落后了
+        boolean stale = Objects.isNull(snapshot) || (Objects.nonNull(room.getLastMsgId())
+                && (Objects.isNull(snapshot.getMaxMsgId()) || snapshot.getMaxMsgId() < room.getLastMsgId()));
+        if (stale) {
+            if (!request.isFirstPage()) {
+                return null;
+            }
+            snapshot = loadRecentMsg(roomId, Objects.nonNull(snapshot));
+        }
+        List<RecentMsgDTO> pageList = new ArrayList<>();
+        for (RecentMsgDTO dto : snapshot.getList()) {
+            if (dto.getMessage().getId() < upper) {
+                pageList.add(dto);
+                if (pageList.size() == request.getPageSize()) {
+                    break;
+                }
+            }
+        }
+        boolean isLast = pageList.size() != request.getPageSize();
+        if (isLast && !snapshot.isComplete()) {//缓存里的不够一页，剩下的在数据库里
+            return null;
+        }
+        if (pageList.isEmpty()) {
+            return CursorPageBaseResp.empty();
+        }
+        List<Message> messages = pageList.stream().map(RecentMsgDTO::getMessage).collect(Collectors.toList());
+        List<MessageMark> marks = pageList.stream().flatMap(dto -> dto.getMarks().stream()).collect(Collectors.toList());
+        String cursor = CollUtil.getLast(messages).getId().toString();
+        return new CursorPageBaseResp<>(cursor, isLast, MessageAdapter.buildMsgResp(messages, marks, receiveUid, buildShowContext(messages)));
+    }
+
+    /**
+     * 从数据库加载房间最新的消息写入缓存
+     */
+    private RoomRecentMsgCache.Snapshot loadRecentMsg(Long roomId, boolean exists) {
+        if (exists) {//落后的缓存先删掉才能重新写入
+            roomRecentMsgCache.evict(roomId);
+        }
+        String version = roomRecentMsgCache.getVersion(roomId);
+        List<Message> messages = messageDao.getCursorPage(roomId, new CursorPageBaseReq(RoomRecentMsgCache.MAX_SIZE, null), null).getList();
+        Map<Long, List<MessageMark>> markMap = messages.isEmpty() ? new HashMap<>() : messageMarkDao.getValidMarkByMsgIdBatch(messages.stream().map(Message::getId).collect(Collectors.toList()))
+                .stream().collect(Collectors.groupingBy(MessageMark::getMsgId));
+        List<RecentMsgDTO> list = messages.stream()
+                .map(message -> new RecentMsgDTO(message, markMap.getOrDefault(message.getId(), new ArrayList<>())))
+                .collect(Collectors.toList());
+        boolean complete = messages.size() < RoomRecentMsgCache.MAX_SIZE;
+        roomRecentMsgCache.init(roomId, list, complete, version);
+        return new RoomRecentMsgCache.Snapshot(list, complete);
+    }
+
     private Long getLastMsgId(Long roomId, Long receiveUid) {
         Room room = roomCache.get(roomId);
         AssertUtil.isNotEmpty(room, "房间号有误");
@@ -290,6 +371,7 @@ public class ChatServiceImpl implements ChatService {
             insert.setReadTime(new Date());
             contactDao.save(insert);
         }
+        unreadCountCache.reset(uid, request.getRoomId());
     }
 
     private void checkRecall(Long uid, Message message) {
@@ -311,7 +393,33 @@ public class ChatServiceImpl implements ChatService {
         }
         //查询消息标志
         List<MessageMark> msgMark = messageMarkDao.getValidMarkByMsgIdBatch(messages.stream().map(Message::getId).collect(Collectors.toList()));
-        return MessageAdapter.buildMsgResp(messages, msgMark, receiveUid);
+        return MessageAdapter.buildMsgResp(messages, msgMark, receiveUid, buildShowContext(messages));
+    }
+
+    /**
+     * 一次查出这批消息展示时要用到的回复消息和用户，避免每条消息单独查
+     */
+    private MsgShowContext buildShowContext(List<Message> messages) {
+        MsgShowContext context = new MsgShowContext();
+        List<Long> replyMsgIds = messages.stream()
+                .map(Message::getReplyMsgId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        //先走消息缓存，最近消息缓存命中的页通常不用再查消息表
+        Map<Long, Message> replyMsgMap = CollectionUtil.isEmpty(replyMsgIds) ? new HashMap<>() : msgCache.getMsgBatch(replyMsgIds);
+        context.setReplyMsgMap(replyMsgMap);
+        //被回复人和撤回人
+        Set<Long> uids = new HashSet<>();
+        replyMsgMap.values().stream().filter(Objects::nonNull).forEach(msg -> uids.add(msg.getFromUid()));
+        messages.stream()
+                .filter(msg -> Objects.equals(msg.getType(), MessageTypeEnum.RECALL.getType()))
+                .map(msg -> msg.getExtra().getRecall().getRecallUid())
+                .forEach(uids::add);
+        if (CollectionUtil.isNotEmpty(uids)) {
+            context.setUserMap(userInfoCache.getBatch(new ArrayList<>(uids)));
+        }
+        return context;
     }
 
 }
@@ -11,6 +11,8 @@ import com.abin.mallchat.common.common.utils.AssertUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -55,14 +57,47 @@ public class ContactServiceImpl implements ContactService {
         Map<Long, List<Message>> roomGroup = messages.stream().collect(Collectors.groupingBy(Message::getRoomId));
         AssertUtil.equal(roomGroup.size(), 1, "只能查相同房间下的消息");
         Long roomId = roomGroup.keySet().iterator().next();
-        Integer totalCount = contactDao.getTotalCount(roomId);
+        //房间成员的阅读时间只查一次，排好序后每条消息二分算出已读人数
+        List<Contact> contacts = contactDao.getReadTimeList(roomId);
+        Map<Long, Long> uidReadTimeMap = new HashMap<>();
+        long[] readTimes = new long[contacts.size()];
+        for (int i = 0; i < contacts.size(); i++) {
+            Contact contact = contacts.get(i);
+            readTimes[i] = Objects.nonNull(contact.getReadTime()) ? contact.getReadTime().getTime() : Long.MIN_VALUE;
+            uidReadTimeMap.put(contact.getUid(), readTimes[i]);
+        }
+        Arrays.sort(readTimes);
+        int totalCount = contacts.size();
         return messages.stream().map(message -> {
             MsgReadInfoDTO readInfoDTO = new MsgReadInfoDTO();
             readInfoDTO.setMsgId(message.getId());
-            Integer readCount = contactDao.getReadCount(message);
+            long createTime = message.getCreateTime().getTime();
+            int readCount = readTimes.length - lowerBound(readTimes, createTime);
+            //不需要算上发送者自己
+            Long fromReadTime = uidReadTimeMap.get(message.getFromUid());
+            if (Objects.nonNull(fromReadTime) && fromReadTime >= createTime) {
+                readCount--;
+            }
             readInfoDTO.setReadCount(readCount);
             readInfoDTO.setUnReadCount(totalCount - readCount - 1);
             return readInfoDTO;
         }).collect(Collectors.toMap(MsgReadInfoDTO::getMsgId, Function.identity()));
     }
+
+    /**
+     * 第一个大于等于target的下标
+     */
+    private static int lowerBound(long[] sorted, long target) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < target) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
 }
@@ -9,6 +9,7 @@ import com.abin.mallchat.common.chat.domain.vo.request.member.MemberExitReq;
 import com.abin.mallchat.common.chat.service.IGroupMemberService;
 import com.abin.mallchat.common.chat.service.adapter.MemberAdapter;
 import com.abin.mallchat.common.chat.service.cache.GroupMemberCache;
+import com.abin.mallchat.common.chat.service.cache.RoomRecentMsgCache;
 import com.abin.mallchat.common.common.exception.CommonErrorEnum;
 import com.abin.mallchat.common.common.exception.GroupErrorEnum;
 import com.abin.mallchat.common.common.utils.AssertUtil;
@@ -54,6 +55,9 @@ public class GroupMemberServiceImpl implements IGroupMemberService {
     @Autowired
     private PushService pushService;
 
+    @Autowired
+    private RoomRecentMsgCache roomRecentMsgCache;
+
     /**
      * 增加管理员
      *
@@ -150,6 +154,8 @@ public class GroupMemberServiceImpl implements IGroupMemberService {
             // 4.4 删除消息记录 (逻辑删除)
             Boolean isDelMessage = messageDao.deleteByRoomId(roomId);
             AssertUtil.isTrue(isDelMessage, CommonErrorEnum.SYSTEM_ERROR);
+            roomRecentMsgCache.evict(roomId);
+            pushService.sendMemberChange(roomId, memberUidList, WSMemberChange.CHANGE_TYPE_REMOVE);
             // TODO 这里也可以告知群成员 群聊已被删除的消息
         } else {
             // 4.5 删除会话
@@ -158,6 +164,7 @@ public class GroupMemberServiceImpl implements IGroupMemberService {
             // 4.6 删除群成员
             Boolean isDelGroupMember = groupMemberDao.removeByGroupId(roomGroup.getId(), Collections.singletonList(uid));
             AssertUtil.isTrue(isDelGroupMember, CommonErrorEnum.SYSTEM_ERROR);
+            pushService.sendMemberChange(roomId, Collections.singletonList(uid), WSMemberChange.CHANGE_TYPE_REMOVE);
             // 4.7 发送移除事件告知群成员
             List<Long> memberUidList = groupMemberCache.getMemberUidList(roomGroup.getRoomId());
             WSBaseResp<WSMemberChange> ws = MemberAdapter.buildMemberRemoveWS(roomGroup.getRoomId(), uid);
@@ -83,6 +83,10 @@ public class RoomAppServiceImpl implements RoomAppService {
     @Autowired
     private HotRoomCache hotRoomCache;
     @Autowired
+    private ContactPendingCache contactPendingCache;
+    @Autowired
+    private UnreadCountCache unreadCountCache;
+    @Autowired
     private UserCache userCache;
     @Autowired
     private GroupMemberDao groupMemberDao;
@@ -110,16 +114,17 @@ public class RoomAppServiceImpl implements RoomAppService {
             Double hotStart = null;
             // 用户基础会话
             CursorPageBaseResp<Contact> contactPage = contactDao.getContactPage(uid, request);
-            List<Long> baseRoomIds = contactPage.getList().stream().map(Contact::getRoomId).collect(Collectors.toList());
-            if (!contactPage.getIsLast()) {
-                hotStart = getCursorOrNull(contactPage.getCursor());
+            CursorPageBaseResp<Long> basePage = mergePendingContact(uid, hotEnd, request.getPageSize(), contactPage);
+            List<Long> baseRoomIds = new ArrayList<>(basePage.getList());
+            if (!basePage.getIsLast()) {
+                hotStart = getCursorOrNull(basePage.getCursor());
             }
             // 热门房间
             Set<ZSetOperations.TypedTuple<String>> typedTuples = hotRoomCache.getRoomRange(hotStart, hotEnd);
             List<Long> hotRoomIds = typedTuples.stream().map(ZSetOperations.TypedTuple::getValue).filter(Objects::nonNull).map(Long::parseLong).collect(Collectors.toList());
             baseRoomIds.addAll(hotRoomIds);
             // 基础会话和热门房间合并
-            page = CursorPageBaseResp.init(contactPage, baseRoomIds);
+            page = CursorPageBaseResp.init(basePage, baseRoomIds);
         } else {// 用户未登录，只查全局房间
             CursorPageBaseResp<Pair<Long, Double>> roomCursorPage = hotRoomCache.getRoomCursorPage(request);
             List<Long> roomIds = roomCursorPage.getList().stream().map(Pair::getKey).collect(Collectors.toList());
@@ -222,6 +227,7 @@ public class RoomAppServiceImpl implements RoomAppService {
         GroupMember member = groupMemberDao.getMember(roomGroup.getId(), removedUid);
         AssertUtil.isNotEmpty(member, "用户已经移除");
         groupMemberDao.removeById(member.getId());
+        pushService.sendMemberChange(roomGroup.getRoomId(), Collections.singletonList(member.getUid()), WSMemberChange.CHANGE_TYPE_REMOVE);
         // 发送移除事件告知群成员
         List<Long> memberUidList = groupMemberCache.getMemberUidList(roomGroup.getRoomId());
         WSBaseResp<WSMemberChange> ws = MemberAdapter.buildMemberRemoveWS(roomGroup.getRoomId(), member.getUid());
@@ -371,6 +377,44 @@ public class RoomAppServiceImpl implements RoomAppService {
         }).collect(Collectors.toList());
     }
 
+    /**
+     * 会话时间是合并写库的，窗口内contact表的active_time可能是旧的，用用户还没落库的房间时间修正当前页：
+     * 时间已经过期的会话从当前页去掉，真实时间落在当前页范围内的房间补进来，补完超过一页的按时间截断并前移游标
+     *
+     * @param upper 当前页的游标，null表示第一页
+     */
+    private CursorPageBaseResp<Long> mergePendingContact(Long uid, Double upper, Integer pageSize, CursorPageBaseResp<Contact> contactPage) {
+        Map<Long, Long> pendingMap = contactPendingCache.getPendingMap(uid);
+        if (pendingMap.isEmpty()) {
+            return CursorPageBaseResp.init(contactPage, contactPage.getList().stream().map(Contact::getRoomId).collect(Collectors.toList()));
+        }
+        //roomId -> 会话时间
+        Map<Long, Long> activeTimeMap = new HashMap<>();
+        contactPage.getList().forEach(contact -> {
+            long activeTime = Objects.isNull(contact.getActiveTime()) ? 0 : contact.getActiveTime().getTime();
+            Long pendingTime = pendingMap.get(contact.getRoomId());
+            if (Objects.isNull(pendingTime) || activeTime >= pendingTime) {
+                activeTimeMap.put(contact.getRoomId(), activeTime);
+            }
+        });
+        Double lower = contactPage.getIsLast() ? null : getCursorOrNull(contactPage.getCursor());
+        pendingMap.forEach((roomId, pendingTime) -> {
+            boolean inPage = (Objects.isNull(upper) || pendingTime < upper) && (Objects.isNull(lower) || pendingTime >= lower);
+            if (inPage) {
+                activeTimeMap.putIfAbsent(roomId, pendingTime);
+            }
+        });
+        List<Map.Entry<Long, Long>> entries = activeTimeMap.entrySet().stream()
+                .sorted(Map.Entry.<Long, Long>comparingByValue().reversed())
+                .collect(Collectors.toList());
+        if (entries.size() <= pageSize) {
+            return CursorPageBaseResp.init(contactPage, entries.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+        }
+        List<Map.Entry<Long, Long>> pageEntries = entries.subList(0, pageSize);
+        String cursor = String.valueOf(CollectionUtil.getLast(pageEntries).getValue());
+        return new CursorPageBaseResp<>(cursor, false, pageEntries.stream().map(Map.Entry::getKey).collect(Collectors.toList()));
+    }
+
     private Double getCursorOrNull(String cursor) {
         return Optional.ofNullable(cursor).map(Double::parseDouble).orElse(null);
     }
@@ -414,9 +458,27 @@ public class RoomAppServiceImpl implements RoomAppService {
             return new HashMap<>();
         }
         List<Contact> contacts = contactDao.getByRoomIds(roomIds, uid);
-        return contacts.parallelStream()
-                .map(contact -> Pair.of(contact.getRoomId(), messageDao.getUnReadCount(contact.getRoomId(), contact.getReadTime())))
-                .collect(Collectors.toMap(Pair::getKey, Pair::getValue));
+        //热门房间所有人都在里面，不维护未读数，直接查库
+        Map<Long, Room> roomMap = roomCache.getBatch(contacts.stream().map(Contact::getRoomId).collect(Collectors.toList()));
+        List<Long> counterRoomIds = contacts.stream()
+                .map(Contact::getRoomId)
+                .filter(roomId -> Objects.nonNull(roomMap.get(roomId)) && !roomMap.get(roomId).isHotRoom())
+                .collect(Collectors.toList());
+        Map<Long, Integer> unReadCountMap = unreadCountCache.getBatch(uid, counterRoomIds);
+        //还没初始化的会话回源数据库，查完写回缓存
+        Map<Long, Integer> loadMap = new HashMap<>();
+        contacts.stream()
+                .filter(contact -> !unReadCountMap.containsKey(contact.getRoomId()))
+                .forEach(contact -> {
+                    Integer count = messageDao.getUnReadCount(contact.getRoomId(), contact.getReadTime());
+                    unReadCountMap.put(contact.getRoomId(), count);
+                    if (counterRoomIds.contains(contact.getRoomId())) {
+                        loadMap.put(contact.getRoomId(), count);
+                    }
+                });
+        unreadCountCache.init(uid, loadMap);
+        unreadCountCache.markReconcile(uid);
+        return unReadCountMap;
     }
 
     private Map<Long, User> getFriendRoomMap(List<Long> roomIds, Long uid) {
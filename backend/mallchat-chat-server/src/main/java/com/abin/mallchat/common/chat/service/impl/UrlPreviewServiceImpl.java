@@ -0,0 +1,209 @@
+package com.abin.mallchat.common.chat.service.impl;
+
+import cn.hutool.core.collection.CollectionUtil;
+import com.abin.mallchat.common.chat.dao.MessageDao;
+import com.abin.mallchat.common.chat.dao.RoomFriendDao;
+import com.abin.mallchat.common.chat.domain.entity.Message;
+import com.abin.mallchat.common.chat.domain.entity.Room;
+import com.abin.mallchat.common.chat.domain.entity.RoomFriend;
+import com.abin.mallchat.common.chat.domain.entity.msg.MessageExtra;
+import com.abin.mallchat.common.chat.domain.enums.MessageStatusEnum;
+import com.abin.mallchat.common.chat.domain.enums.MessageTypeEnum;
+import com.abin.mallchat.common.chat.domain.vo.response.ChatMessageResp;
+import com.abin.mallchat.common.chat.service.ChatService;
+import com.abin.mallchat.common.chat.service.UrlPreviewService;
+import com.abin.mallchat.common.chat.service.cache.MsgCache;
+import com.abin.mallchat.common.chat.service.cache.RoomRecentMsgCache;
+import com.abin.mallchat.common.chat.service.cache.RoomCache;
+import com.abin.mallchat.common.chat.service.cache.UrlInfoCache;
+import com.abin.mallchat.common.common.config.ThreadPoolConfig;
+import com.abin.mallchat.common.common.factory.MyThreadFactory;
+import com.abin.mallchat.common.common.utils.discover.AbstractUrlDiscover;
+import com.abin.mallchat.common.common.utils.discover.PrioritizedUrlDiscover;
+import com.abin.mallchat.common.common.utils.discover.domain.UrlInfo;
+import com.abin.mallchat.common.user.domain.enums.WSBaseResp;
+import com.abin.mallchat.common.user.service.adapter.WSAdapter;
+import com.abin.mallchat.common.user.service.impl.PushService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+/**
+ * Description: 消息链接预览
+ * 发消息时只用缓存里的预览，没命中的链接在事务提交后交给解析线程池，全部解析完（或超时）再更新消息并推送，
+ * 中间没有线程阻塞等结果，发消息的耗时、事务长度和消息投递都不再受第三方网站影响
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Slf4j
+@Service
+public class UrlPreviewServiceImpl implements UrlPreviewService {
+
+    private static final PrioritizedUrlDiscover URL_TITLE_DISCOVER = new PrioritizedUrlDiscover();
+    /**
+     * 一条消息所有链接的总等待时间，单个链接jsoup自己有2s超时
+     */
+    private static final long FETCH_TIMEOUT_MILLIS = 3000;
+
+    @Autowired
+    private UrlInfoCache urlInfoCache;
+    @Autowired
+    private MessageDao messageDao;
+    @Autowired
+    private MsgCache msgCache;
+    @Autowired
+    private RoomRecentMsgCache roomRecentMsgCache;
+    @Autowired
+    private RoomCache roomCache;
+    @Autowired
+    private RoomFriendDao roomFriendDao;
+    @Autowired
+    private ChatService chatService;
+    @Autowired
+    private PushService pushService;
+    @Autowired
+    @Qualifier(ThreadPoolConfig.URL_PREVIEW_EXECUTOR)
+    private ThreadPoolTaskExecutor urlPreviewExecutor;
+    /**
+     * 到点取消还没解析完的链接，排队中的不再执行，执行中的会被中断
+     */
+    private final ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(
+            new MyThreadFactory(r -> new Thread(r, "url-preview-timeout")));
+
+    @PreDestroy
+    public void destroy() {
+        timeoutScheduler.shutdownNow();
+    }
+
+    @Override
+    public Map<String, UrlInfo> getCachedUrlContentMap(String content) {
+        List<String> urlList = AbstractUrlDiscover.getUrlList(content);
+        if (CollectionUtil.isEmpty(urlList)) {
+            return new HashMap<>();
+        }
+        return urlInfoCache.getBatch(urlList).entrySet().stream()
+                .filter(e -> !UrlInfoCache.isEmpty(e.getValue()))
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue));
+    }
+
+    @Override
+    public void enrichMsg(Message snapshot) {
+        if (!Objects.equals(snapshot.getType(), MessageTypeEnum.TEXT.getType())) {
+            return;
+        }
+        Map<String, UrlInfo> snapshotUrlContentMap = Optional.ofNullable(snapshot.getExtra())
+                .map(MessageExtra::getUrlContentMap)
+                .orElse(new HashMap<>());
+        //发消息时已经带上预览的链接不用再解析，大部分消息到这里就结束了，不用查库
+        List<String> urlList = AbstractUrlDiscover.getUrlList(snapshot.getContent()).stream()
+                .filter(url -> !snapshotUrlContentMap.containsKey(url))
+                .collect(Collectors.toList());
+        if (CollectionUtil.isEmpty(urlList)) {
+            return;
+        }
+        Map<String, CompletableFuture<UrlInfo>> futureMap = new HashMap<>();
+        for (String url : urlList) {
+            try {
+                futureMap.put(url, urlPreviewExecutor.submitListenable(() -> load(url)).completable());
+            } catch (RejectedExecutionException e) {//解析任务太多，这次不解析，也不做失败缓存
+                log.warn("链接预览线程池已满，跳过 url:{}", url);
+            }
+        }
+        if (futureMap.isEmpty()) {
+            return;
+        }
+        //cancel会透传到线程池里的任务；超时的情况下合并在计时线程上做，只有一次查库和更新
+        ScheduledFuture<?> timeout = timeoutScheduler.schedule(() -> futureMap.values().forEach(future -> future.cancel(true)),
+                FETCH_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        CompletableFuture.allOf(futureMap.values().toArray(new CompletableFuture[0]))
+                .whenComplete((v, e) -> {
+                    timeout.cancel(false);
+                    try {
+                        merge(snapshot.getId(), collect(futureMap));
+                    } catch (Exception ex) {
+                        log.error("链接预览更新消息失败 msgId:{}", snapshot.getId(), ex);
+                    }
+                });
+    }
+
+    /**
+     * 在解析线程池里执行，先查缓存（包括失败缓存），没有再请求第三方网站
+     */
+    private UrlInfo load(String url) {
+        Map<String, UrlInfo> cached = urlInfoCache.getBatch(Collections.singletonList(url));
+        if (cached.containsKey(url)) {
+            return cached.get(url);
+        }
+        UrlInfo urlInfo = URL_TITLE_DISCOVER.getContent(url);
+        urlInfoCache.put(url, urlInfo);
+        return urlInfo;
+    }
+
+    /**
+     * 收集解析结果，超时取消或者异常的链接做失败缓存
+     */
+    private Map<String, UrlInfo> collect(Map<String, CompletableFuture<UrlInfo>> futureMap) {
+        Map<String, UrlInfo> result = new HashMap<>();
+        futureMap.forEach((url, future) -> {
+            if (future.isCompletedExceptionally()) {
+                urlInfoCache.put(url, null);
+                log.warn("链接预览解析失败 url:{}", url);
+                return;
+            }
+            UrlInfo urlInfo = future.join();
+            if (!UrlInfoCache.isEmpty(urlInfo)) {
+                result.put(url, urlInfo);
+            }
+        });
+        return result;
+    }
+
+    private void merge(Long msgId, Map<String, UrlInfo> resolved) {
+        if (resolved.isEmpty()) {
+            return;
+        }
+        //解析期间消息可能被撤回或修改，以数据库里最新的为准再合并
+        Message message = messageDao.getById(msgId);
+        if (Objects.isNull(message) || !Objects.equals(message.getType(), MessageTypeEnum.TEXT.getType())) {
+            return;
+        }
+        MessageExtra extra = Optional.ofNullable(message.getExtra()).orElse(new MessageExtra());
+        Map<String, UrlInfo> urlContentMap = Optional.ofNullable(extra.getUrlContentMap()).orElse(new HashMap<>());
+        resolved.forEach(urlContentMap::putIfAbsent);
+        extra.setUrlContentMap(urlContentMap);
+        Message update = new Message();
+        update.setId(msgId);
+        update.setExtra(extra);
+        messageDao.updateById(update);
+        msgCache.evictMsg(msgId);
+        roomRecentMsgCache.evict(message.getRoomId());
+        message.setExtra(extra);
+        if (Objects.equals(message.getStatus(), MessageStatusEnum.NORMAL.getStatus())) {
+            pushUpdate(message);
+        }
+    }
+
+    /**
+     * 按房间类型推送消息更新，和新消息的推送范围一致
+     */
+    private void pushUpdate(Message message) {
+        ChatMessageResp msgResp = chatService.getMsgResp(message, null);
+        WSBaseResp<?> resp = WSAdapter.buildMsgUpdate(msgResp);
+        Room room = roomCache.get(message.getRoomId());
+        if (room.isHotRoom()) {
+            pushService.sendPushMsg(resp);
+        } else if (room.isRoomFriend()) {
+            RoomFriend roomFriend = roomFriendDao.getByRoomId(room.getId());
+            pushService.sendPushMsg(resp, Arrays.asList(roomFriend.getUid1(), roomFriend.getUid2()));
+        } else {
+            pushService.sendPushRoomMsg(resp, room.getId());
+        }
+    }
+}
@@ -2,25 +2,35 @@ package com.abin.mallchat.common.chat.service.strategy.msg;
 
 import cn.hutool.core.bean.BeanUtil;
 import com.abin.mallchat.common.chat.dao.MessageDao;
+import com.abin.mallchat.common.chat.domain.dto.MsgShowContext;
 import com.abin.mallchat.common.chat.domain.entity.Message;
+import com.abin.mallchat.common.chat.domain.entity.msg.MessageExtra;
 import com.abin.mallchat.common.chat.domain.enums.MessageTypeEnum;
 import com.abin.mallchat.common.chat.domain.vo.request.ChatMessageReq;
 import com.abin.mallchat.common.chat.service.adapter.MessageAdapter;
+import com.abin.mallchat.common.chat.service.cache.RoomMsgSeqCache;
 import com.abin.mallchat.common.common.utils.AssertUtil;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import javax.annotation.PostConstruct;
 import java.lang.reflect.ParameterizedType;
+import java.util.Objects;
 
 /**
  * Description: 消息处理器抽象类
  * Author: <a href="https://github.com/zongzibinbin">abin</a>
  * Date: 2023-06-04
  */
+@Slf4j
 public abstract class AbstractMsgHandler<Req> {
     @Autowired
     private MessageDao messageDao;
+    @Autowired
+    private RoomMsgSeqCache roomMsgSeqCache;
     private Class<Req> bodyClass;
 
     @PostConstruct
@@ -40,18 +50,45 @@ public abstract class AbstractMsgHandler<Req> {
     }
 
     @Transactional
-    public Long checkAndSaveMsg(ChatMessageReq request, Long uid) {
+    public Message checkAndSaveMsg(ChatMessageReq request, Long uid) {
         Req body = this.toBean(request.getBody());
         //统一校验
         AssertUtil.allCheckValidateThrow(body);
         //子类扩展校验
         checkMsg(body, request.getRoomId(), uid);
         Message insert = MessageAdapter.buildMsgSave(request, uid);
-        //统一保存
+        //房间内的消息序号，回复消息的间隔条数靠它计算
+        insert.setExtra(MessageExtra.builder().roomSeq(nextRoomSeq(request.getRoomId())).build());
+        //子类扩展消息内容
+        fillMsg(insert, body);
+        //内容都准备好了，统一一次插入
         messageDao.save(insert);
-        //子类扩展保存
-        saveMsg(insert, body);
-        return insert.getId();
+        return insert;
+    }
+
+    /**
+     * 房间消息序号，redis不可用时返回null，不影响发消息，间隔条数退回按区间计数。
+     * 事务没提交的序号作废掉，算间隔时不会多算
+     */
+    private Long nextRoomSeq(Long roomId) {
+        Long seq;
+        try {
+            seq = roomMsgSeqCache.next(roomId);
+        } catch (Exception e) {
+            log.error("获取房间消息序号失败 roomId:{}", roomId, e);
+            return null;
+        }
+        if (Objects.nonNull(seq) && TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        roomMsgSeqCache.release(roomId, seq);
+                    }
+                }
+            });
+        }
+        return seq;
     }
 
     private Req toBean(Object body) {
@@ -61,13 +98,23 @@ public abstract class AbstractMsgHandler<Req> {
         return BeanUtil.toBean(body, bodyClass);
     }
 
-    protected abstract void saveMsg(Message message, Req body);
+    /**
+     * 子类扩展消息内容，在插入前调用，只需要往message上填充字段
+     */
+    protected abstract void fillMsg(Message message, Req body);
 
     /**
      * 展示消息
      */
     public abstract Object showMsg(Message msg);
 
+    /**
+     * 批量展示消息，context里是预先批量查好的关联数据，需要查关联数据的子类重写
+     */
+    public Object showMsg(Message msg, MsgShowContext context) {
+        return showMsg(msg);
+    }
+
     /**
      * 被回复时——展示的消息
      */
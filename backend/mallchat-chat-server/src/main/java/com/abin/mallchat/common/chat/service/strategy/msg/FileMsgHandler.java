@@ -1,11 +1,9 @@
 package com.abin.mallchat.common.chat.service.strategy.msg;
 
-import com.abin.mallchat.common.chat.dao.MessageDao;
 import com.abin.mallchat.common.chat.domain.entity.Message;
 import com.abin.mallchat.common.chat.domain.entity.msg.FileMsgDTO;
 import com.abin.mallchat.common.chat.domain.entity.msg.MessageExtra;
 import com.abin.mallchat.common.chat.domain.enums.MessageTypeEnum;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Optional;
@@ -17,22 +15,16 @@ import java.util.Optional;
  */
 @Component
 public class FileMsgHandler extends AbstractMsgHandler<FileMsgDTO> {
-    @Autowired
-    private MessageDao messageDao;
-
     @Override
     MessageTypeEnum getMsgTypeEnum() {
         return MessageTypeEnum.FILE;
     }
 
     @Override
-    public void saveMsg(Message msg, FileMsgDTO body) {
+    public void fillMsg(Message msg, FileMsgDTO body) {
         MessageExtra extra = Optional.ofNullable(msg.getExtra()).orElse(new MessageExtra());
-        Message update = new Message();
-        update.setId(msg.getId());
-        update.setExtra(extra);
         extra.setFileMsg(body);
-        messageDao.updateById(update);
+        msg.setExtra(extra);
     }
 
     @Override
@@ -2,6 +2,7 @@ package com.abin.mallchat.common.chat.service.strategy.msg;
 
 import com.abin.mallchat.common.chat.dao.MessageDao;
 import com.abin.mallchat.common.chat.domain.dto.ChatMsgRecallDTO;
+import com.abin.mallchat.common.chat.domain.dto.MsgShowContext;
 import com.abin.mallchat.common.chat.domain.entity.Message;
 import com.abin.mallchat.common.chat.domain.entity.msg.MessageExtra;
 import com.abin.mallchat.common.chat.domain.entity.msg.MsgRecall;
@@ -39,14 +40,19 @@ public class RecallMsgHandler extends AbstractMsgHandler<Object> {
     }
 
     @Override
-    public void saveMsg(Message msg, Object body) {
+    public void fillMsg(Message msg, Object body) {
         throw new UnsupportedOperationException();
     }
 
     @Override
     public Object showMsg(Message msg) {
+        return showMsg(msg, MsgShowContext.empty());
+    }
+
+    @Override
+    public Object showMsg(Message msg, MsgShowContext context) {
         MsgRecall recall = msg.getExtra().getRecall();
-        User userInfo = userCache.getUserInfo(recall.getRecallUid());
+        User userInfo = context.getUser(recall.getRecallUid(), userCache::getUserInfo);
         if (!Objects.equals(recall.getRecallUid(), msg.getFromUid())) {
             return "管理员\"" + userInfo.getName() + "\"撤回了一条成员消息";
         }
@@ -1,9 +1,7 @@
 package com.abin.mallchat.common.chat.service.strategy.msg;
 
-import com.abin.mallchat.common.chat.dao.MessageDao;
 import com.abin.mallchat.common.chat.domain.entity.Message;
 import com.abin.mallchat.common.chat.domain.enums.MessageTypeEnum;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 /**
@@ -14,20 +12,14 @@ import org.springframework.stereotype.Component;
 @Component
 public class SystemMsgHandler extends AbstractMsgHandler<String> {
 
-    @Autowired
-    private MessageDao messageDao;
-
     @Override
     MessageTypeEnum getMsgTypeEnum() {
         return MessageTypeEnum.SYSTEM;
     }
 
     @Override
-    public void saveMsg(Message msg, String body) {
-        Message update = new Message();
-        update.setId(msg.getId());
-        update.setContent(body);
-        messageDao.updateById(update);
+    public void fillMsg(Message msg, String body) {
+        msg.setContent(body);
     }
 
     @Override
@@ -2,17 +2,19 @@ package com.abin.mallchat.common.chat.service.strategy.msg;
 
 import cn.hutool.core.collection.CollectionUtil;
 import com.abin.mallchat.common.chat.dao.MessageDao;
+import com.abin.mallchat.common.chat.domain.dto.MsgShowContext;
 import com.abin.mallchat.common.chat.domain.entity.Message;
 import com.abin.mallchat.common.chat.domain.entity.msg.MessageExtra;
 import com.abin.mallchat.common.chat.domain.enums.MessageStatusEnum;
 import com.abin.mallchat.common.chat.domain.enums.MessageTypeEnum;
 import com.abin.mallchat.common.chat.domain.vo.request.msg.TextMsgReq;
 import com.abin.mallchat.common.chat.domain.vo.response.msg.TextMsgResp;
+import com.abin.mallchat.common.chat.service.UrlPreviewService;
 import com.abin.mallchat.common.chat.service.adapter.MessageAdapter;
 import com.abin.mallchat.common.chat.service.cache.MsgCache;
+import com.abin.mallchat.common.chat.service.cache.RoomMsgSeqCache;
 import com.abin.mallchat.common.common.domain.enums.YesOrNoEnum;
 import com.abin.mallchat.common.common.utils.AssertUtil;
-import com.abin.mallchat.common.common.utils.discover.PrioritizedUrlDiscover;
 import com.abin.mallchat.common.common.utils.discover.domain.UrlInfo;
 import com.abin.mallchat.common.common.algorithm.sensitiveWord.SensitiveWordBs;
 import com.abin.mallchat.common.user.domain.entity.User;
@@ -41,6 +43,8 @@ public class TextMsgHandler extends AbstractMsgHandler<TextMsgReq> {
     @Autowired
     private MsgCache msgCache;
     @Autowired
+    private RoomMsgSeqCache roomMsgSeqCache;
+    @Autowired
     private UserCache userCache;
     @Autowired
     private UserInfoCache userInfoCache;
@@ -48,8 +52,8 @@ public class TextMsgHandler extends AbstractMsgHandler<TextMsgReq> {
     private IRoleService iRoleService;
     @Autowired
     private SensitiveWordBs sensitiveWordBs;
-
-    private static final PrioritizedUrlDiscover URL_TITLE_DISCOVER = new PrioritizedUrlDiscover();
+    @Autowired
+    private UrlPreviewService urlPreviewService;
 
     @Override
     MessageTypeEnum getMsgTypeEnum() {
@@ -60,7 +64,7 @@ public class TextMsgHandler extends AbstractMsgHandler<TextMsgReq> {
     protected void checkMsg(TextMsgReq body, Long roomId, Long uid) {
         //校验下回复消息
         if (Objects.nonNull(body.getReplyMsgId())) {
-            Message replyMsg = messageDao.getById(body.getReplyMsgId());
+            Message replyMsg = msgCache.getMsg(body.getReplyMsgId());
             AssertUtil.isNotEmpty(replyMsg, "回复消息不存在");
             AssertUtil.equal(replyMsg.getRoomId(), roomId, "只能回复相同会话内的消息");
         }
@@ -79,40 +83,53 @@ public class TextMsgHandler extends AbstractMsgHandler<TextMsgReq> {
     }
 
     @Override
-    public void saveMsg(Message msg, TextMsgReq body) {//插入文本内容
+    public void fillMsg(Message msg, TextMsgReq body) {//填充文本内容
         MessageExtra extra = Optional.ofNullable(msg.getExtra()).orElse(new MessageExtra());
-        Message update = new Message();
-        update.setId(msg.getId());
-        update.setContent(sensitiveWordBs.filter(body.getContent()));
-        update.setExtra(extra);
+        msg.setContent(sensitiveWordBs.filter(body.getContent()));
+        msg.setExtra(extra);
         //如果有回复消息
         if (Objects.nonNull(body.getReplyMsgId())) {
-            Integer gapCount = messageDao.getGapCount(msg.getRoomId(), body.getReplyMsgId(), msg.getId());
-            update.setGapCount(gapCount);
-            update.setReplyMsgId(body.getReplyMsgId());
-
+            msg.setGapCount(getGapCount(msg, msgCache.getMsg(body.getReplyMsgId())));
+            msg.setReplyMsgId(body.getReplyMsgId());
         }
-        //判断消息url跳转
-        Map<String, UrlInfo> urlContentMap = URL_TITLE_DISCOVER.getUrlContentMap(body.getContent());
+        //判断消息url跳转，只用缓存里已经解析过的，没解析过的事务提交后异步解析
+        Map<String, UrlInfo> urlContentMap = urlPreviewService.getCachedUrlContentMap(body.getContent());
         extra.setUrlContentMap(urlContentMap);
         //艾特功能
         if (CollectionUtil.isNotEmpty(body.getAtUidList())) {
             extra.setAtUidList(body.getAtUidList());
 
         }
+    }
 
-        messageDao.updateById(update);
+    /**
+     * 与回复消息的间隔条数（包含新消息自己），两条消息都有房间序号时直接相减，再扣掉中间作废的序号
+     */
+    private Integer getGapCount(Message msg, Message replyMsg) {
+        Long seq = msg.getExtra().getRoomSeq();
+        Long replySeq = Optional.ofNullable(replyMsg.getExtra()).map(MessageExtra::getRoomSeq).orElse(null);
+        if (Objects.nonNull(seq) && Objects.nonNull(replySeq) && seq > replySeq) {
+            long gap = seq - replySeq - roomMsgSeqCache.countReleased(msg.getRoomId(), replySeq, seq);
+            return (int) Math.min(Math.max(gap, 1), Integer.MAX_VALUE);
+        }
+        //老消息没有序号，按id区间计数，新消息还没插入，加上它自己
+        return messageDao.getGapCount(msg.getRoomId(), replyMsg.getId(), Long.MAX_VALUE) + 1;
     }
 
     @Override
     public Object showMsg(Message msg) {
+        return showMsg(msg, MsgShowContext.empty());
+    }
+
+    @Override
+    public Object showMsg(Message msg, MsgShowContext context) {
         TextMsgResp resp = new TextMsgResp();
         resp.setContent(msg.getContent());
         resp.setUrlContentMap(Optional.ofNullable(msg.getExtra()).map(MessageExtra::getUrlContentMap).orElse(null));
         resp.setAtUidList(Optional.ofNullable(msg.getExtra()).map(MessageExtra::getAtUidList).orElse(null));
         //回复消息
         Optional<Message> reply = Optional.ofNullable(msg.getReplyMsgId())
-                .map(msgCache::getMsg)
+                .map(replyMsgId -> context.getReplyMsg(replyMsgId, msgCache::getMsg))
                 .filter(a -> Objects.equals(a.getStatus(), MessageStatusEnum.NORMAL.getStatus()));
         if (reply.isPresent()) {
             Message replyMessage = reply.get();
@@ -121,7 +138,7 @@ public class TextMsgHandler extends AbstractMsgHandler<TextMsgReq> {
             replyMsgVO.setUid(replyMessage.getFromUid());
             replyMsgVO.setType(replyMessage.getType());
             replyMsgVO.setBody(MsgHandlerFactory.getStrategyNoNull(replyMessage.getType()).showReplyMsg(replyMessage));
-            User replyUser = userCache.getUserInfo(replyMessage.getFromUid());
+            User replyUser = context.getUser(replyMessage.getFromUid(), userCache::getUserInfo);
             replyMsgVO.setUsername(replyUser.getName());
             replyMsgVO.setCanCallback(YesOrNoEnum.toStatus(Objects.nonNull(msg.getGapCount()) && msg.getGapCount() <= MessageAdapter.CAN_CALLBACK_GAP_COUNT));
             replyMsgVO.setGapCount(msg.getGapCount());
@@ -1,11 +1,9 @@
 package com.abin.mallchat.common.chat.service.strategy.msg;
 
-import com.abin.mallchat.common.chat.dao.MessageDao;
 import com.abin.mallchat.common.chat.domain.entity.Message;
 import com.abin.mallchat.common.chat.domain.entity.msg.MessageExtra;
 import com.abin.mallchat.common.chat.domain.entity.msg.VideoMsgDTO;
 import com.abin.mallchat.common.chat.domain.enums.MessageTypeEnum;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Optional;
@@ -17,22 +15,16 @@ import java.util.Optional;
  */
 @Component
 public class VideoMsgHandler extends AbstractMsgHandler<VideoMsgDTO> {
-    @Autowired
-    private MessageDao messageDao;
-
     @Override
     MessageTypeEnum getMsgTypeEnum() {
         return MessageTypeEnum.VIDEO;
     }
 
     @Override
-    public void saveMsg(Message msg, VideoMsgDTO body) {
+    public void fillMsg(Message msg, VideoMsgDTO body) {
         MessageExtra extra = Optional.ofNullable(msg.getExtra()).orElse(new MessageExtra());
-        Message update = new Message();
-        update.setId(msg.getId());
-        update.setExtra(extra);
         extra.setVideoMsgDTO(body);
-        messageDao.updateById(update);
+        msg.setExtra(extra);
     }
 
     @Override
@@ -53,6 +53,15 @@ public @interface FrequencyControl {
      */
     int count();
 
+    /**
+     * 是否使用近似模式，默认精确模式
+     * 近似模式每个节点在本地判断，计数异步同步到redis，请求不访问redis，但短时间内可能多放过几次。
+     * 适合高频接口的防刷，安全相关的频控（登录、验证码等）不要开启
+     *
+     * @return 是否近似
+     */
+    boolean approximate() default false;
+
     enum Target {
         UID, IP, EL
     }
@@ -19,6 +19,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
 
+import static com.abin.mallchat.common.common.service.frequencycontrol.FrequencyControlStrategyFactory.APPROXIMATE_TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER;
 import static com.abin.mallchat.common.common.service.frequencycontrol.FrequencyControlStrategyFactory.TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER;
 
 /**
@@ -52,10 +53,21 @@ public class FrequencyControlAspect {
             }
             keyMap.put(prefix + ":" + key, frequencyControl);
         }
-        // 将注解的参数转换为编程式调用需要的参数
-        List<FrequencyControlDTO> frequencyControlDTOS = keyMap.entrySet().stream().map(entrySet -> buildFrequencyControlDTO(entrySet.getKey(), entrySet.getValue())).collect(Collectors.toList());
-        // 调用编程式注解
-        return FrequencyControlUtil.executeWithFrequencyControlList(TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER, frequencyControlDTOS, joinPoint::proceed);
+        // 将注解的参数转换为编程式调用需要的参数，精确和近似的频控分开
+        Map<Boolean, List<FrequencyControlDTO>> approximateMap = keyMap.entrySet().stream()
+                .collect(Collectors.partitioningBy(entrySet -> entrySet.getValue().approximate(),
+                        Collectors.mapping(entrySet -> buildFrequencyControlDTO(entrySet.getKey(), entrySet.getValue()), Collectors.toList())));
+        List<FrequencyControlDTO> exactList = approximateMap.get(false);
+        List<FrequencyControlDTO> approximateList = approximateMap.get(true);
+        // 调用编程式注解，先过本地的近似频控，被拦下的请求不用再访问redis
+        if (approximateList.isEmpty()) {
+            return FrequencyControlUtil.executeWithFrequencyControlList(TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER, exactList, joinPoint::proceed);
+        }
+        if (exactList.isEmpty()) {
+            return FrequencyControlUtil.executeWithFrequencyControlList(APPROXIMATE_TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER, approximateList, joinPoint::proceed);
+        }
+        return FrequencyControlUtil.executeWithFrequencyControlList(APPROXIMATE_TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER, approximateList,
+                () -> FrequencyControlUtil.executeWithFrequencyControlList(TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER, exactList, joinPoint::proceed));
     }
 
     /**
@@ -24,13 +24,17 @@ public class ThreadPoolConfig implements AsyncConfigurer, SecureInvokeConfigurer
      * 项目共用线程池
      */
     public static final String MALLCHAT_EXECUTOR = "mallchatExecutor";
-    /**
-     * websocket通信线程池
-     */
-    public static final String WS_EXECUTOR = "websocketExecutor";
 
 
     public static final String AICHAT_EXECUTOR = "aichatExecutor";
+    /**
+     * websocket鉴权、登录等阻塞请求的线程池，不占用netty的IO线程
+     */
+    public static final String WS_BIZ_EXECUTOR = "wsBizExecutor";
+    /**
+     * 链接预览解析线程池，请求第三方网站，和业务线程隔离
+     */
+    public static final String URL_PREVIEW_EXECUTOR = "urlPreviewExecutor";
 
     @Override
     public Executor getAsyncExecutor() {
@@ -56,19 +60,6 @@ public class ThreadPoolConfig implements AsyncConfigurer, SecureInvokeConfigurer
         return executor;
     }
 
-    @Bean(WS_EXECUTOR)
-    public ThreadPoolTaskExecutor websocketExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(16);
-        executor.setMaxPoolSize(16);
-        executor.setQueueCapacity(1000);//支持同时推送1000人
-        executor.setThreadNamePrefix("websocket-executor-");
-        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.DiscardPolicy());//满了直接丢弃，默认为不重要消息推送
-        executor.setThreadFactory(new MyThreadFactory(executor));
-        executor.initialize();
-        return executor;
-    }
-
     @Bean(AICHAT_EXECUTOR)
     public ThreadPoolTaskExecutor chatAiExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
@@ -80,4 +71,30 @@ public class ThreadPoolConfig implements AsyncConfigurer, SecureInvokeConfigurer
         executor.setThreadFactory(new MyThreadFactory(executor));
         return executor;
     }
+
+    @Bean(URL_PREVIEW_EXECUTOR)
+    public ThreadPoolTaskExecutor urlPreviewExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(8);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("url-preview-executor-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());//满了直接拒绝，调用方跳过这次预览
+        executor.setThreadFactory(new MyThreadFactory(executor));
+        executor.initialize();
+        return executor;
+    }
+
+    @Bean(WS_BIZ_EXECUTOR)
+    public ThreadPoolTaskExecutor wsBizExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(16);
+        executor.setMaxPoolSize(16);
+        executor.setQueueCapacity(1000);
+        executor.setThreadNamePrefix("ws-biz-executor-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());//满了直接拒绝，提交方是netty的IO线程，不能让它执行阻塞任务，由WSBizDispatcher兜底
+        executor.setThreadFactory(new MyThreadFactory(executor));
+        executor.initialize();
+        return executor;
+    }
 }
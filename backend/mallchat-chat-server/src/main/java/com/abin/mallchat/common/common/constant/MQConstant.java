@@ -17,6 +17,18 @@ public interface MQConstant {
     String PUSH_TOPIC = "websocket_push";
     String PUSH_GROUP = "websocket_push_group";
 
+    /**
+     * 定向push，tag为目标节点id
+     */
+    String PUSH_ROUTE_TOPIC = "websocket_route_push";
+    String PUSH_ROUTE_GROUP = "websocket_route_push_group";
+
+    /**
+     * 群成员变动，同步各节点的房间连接索引
+     */
+    String MEMBER_CHANGE_TOPIC = "websocket_member_change";
+    String MEMBER_CHANGE_GROUP = "websocket_member_change_group";
+
     /**
      * (授权完成后)登录信息mq
      */
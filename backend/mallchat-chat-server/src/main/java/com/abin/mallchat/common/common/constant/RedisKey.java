@@ -16,6 +16,61 @@ public class RedisKey {
      */
     public static final String OFFLINE_UID_ZET = "offline";
 
+    /**
+     * 用户连接所在的节点
+     */
+    public static final String PUSH_ROUTE_SET = "pushRoute:uid_%d";
+
+    /**
+     * 房间消息序号
+     */
+    public static final String ROOM_MSG_SEQ = "roomMsgSeq:roomId_%d";
+
+    /**
+     * 房间里发消息失败、作废掉的序号
+     */
+    public static final String ROOM_MSG_SEQ_RELEASED_ZET = "roomMsgSeqReleased:roomId_%d";
+
+    /**
+     * 链接预览信息
+     */
+    public static final String URL_INFO_STRING = "urlInfo:%s";
+
+    /**
+     * 用户会话时间还没落库的房间
+     */
+    public static final String CONTACT_PENDING_ZET = "contactPending:uid_%d";
+
+    /**
+     * 用户各个会话的未读数
+     */
+    public static final String UNREAD_COUNT_HASH = "unreadCount:uid_%d";
+
+    /**
+     * 最近查看过会话列表、需要校对未读数的用户
+     */
+    public static final String UNREAD_RECONCILE_ZET = "unreadReconcile";
+
+    /**
+     * 房间最近的消息
+     */
+    public static final String ROOM_RECENT_MSG_ZET = "roomRecentMsg:roomId_%d";
+
+    /**
+     * 房间最近消息缓存的版本号，每次失效加一
+     */
+    public static final String ROOM_RECENT_MSG_VERSION = "roomRecentMsgVersion:roomId_%d";
+
+    /**
+     * 近似频控的计数，按对齐的时间窗口分key
+     */
+    public static final String FREQUENCY_CONTROL_APPROXIMATE_STRING = "frequencyControl:approximate:%s:%d";
+
+    /**
+     * 参与近似频控的节点，score是心跳时间
+     */
+    public static final String FREQUENCY_CONTROL_NODE_ZET = "frequencyControl:node";
+
     /**
      * 热门房间列表
      */
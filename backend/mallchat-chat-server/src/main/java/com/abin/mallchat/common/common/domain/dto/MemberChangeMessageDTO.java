@@ -0,0 +1,33 @@
+package com.abin.mallchat.common.common.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * Description: 群成员变动消息，广播给所有节点维护本地房间连接索引
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MemberChangeMessageDTO implements Serializable {
+    /**
+     * 房间id
+     */
+    private Long roomId;
+    /**
+     * 变动的uid
+     */
+    private List<Long> uidList;
+    /**
+     * 变动类型 1加入群组 2移除群组
+     *
+     * @see com.abin.mallchat.common.user.domain.vo.response.ws.WSMemberChange
+     */
+    private Integer changeType;
+}
@@ -1,5 +1,6 @@
 package com.abin.mallchat.common.common.domain.dto;
 
+import com.abin.mallchat.common.chat.domain.entity.Message;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -16,4 +17,8 @@ import java.io.Serializable;
 @NoArgsConstructor
 public class MsgSendMessageDTO implements Serializable {
     private Long msgId;
+    /**
+     * 发送时的消息快照，首次消费直接用；重新投递时消息可能已经被撤回或修改，以数据库为准
+     */
+    private Message message;
 }
@@ -29,7 +29,12 @@ public class PushMessageDTO implements Serializable {
     private List<Long> uidList;
 
     /**
-     * 推送类型 1个人 2全员
+     * 推送的房间id
+     */
+    private Long roomId;
+
+    /**
+     * 推送类型 1个人 2全员 3房间
      *
      * @see com.abin.mallchat.common.user.domain.enums.WSPushTypeEnum
      */
@@ -51,4 +56,12 @@ public class PushMessageDTO implements Serializable {
         this.wsBaseMsg = wsBaseMsg;
         this.pushType = WSPushTypeEnum.ALL.getType();
     }
+
+    public static PushMessageDTO buildRoomPush(Long roomId, WSBaseResp<?> wsBaseMsg) {
+        PushMessageDTO dto = new PushMessageDTO();
+        dto.setRoomId(roomId);
+        dto.setWsBaseMsg(wsBaseMsg);
+        dto.setPushType(WSPushTypeEnum.ROOM.getType());
+        return dto;
+    }
 }
@@ -1,14 +1,22 @@
 package com.abin.mallchat.common.common.event;
 
+import com.abin.mallchat.common.chat.domain.entity.Message;
 import lombok.Getter;
 import org.springframework.context.ApplicationEvent;
 
 @Getter
 public class MessageSendEvent extends ApplicationEvent {
-    private Long msgId;
+    /**
+     * 刚保存的消息快照，监听器直接用，不用再查库
+     */
+    private Message message;
 
-    public MessageSendEvent(Object source, Long msgId) {
+    public MessageSendEvent(Object source, Message message) {
         super(source);
-        this.msgId = msgId;
+        this.message = message;
+    }
+
+    public Long getMsgId() {
+        return message.getId();
     }
 }
@@ -63,6 +63,8 @@ public class GroupMemberAddListener {
         Long inviteUid = event.getInviteUid();
         User user = userInfoCache.get(inviteUid);
         List<Long> uidList = memberList.stream().map(GroupMember::getUid).collect(Collectors.toList());
+        //先同步各节点的房间索引，新成员才能收到入群消息
+        pushService.sendMemberChange(roomGroup.getRoomId(), uidList, WSMemberChange.CHANGE_TYPE_ADD);
         ChatMessageReq chatMessageReq = RoomAdapter.buildGroupAddMessage(roomGroup, user, userInfoCache.getBatch(uidList));
         chatService.sendMsg(chatMessageReq, User.UID_SYSTEM);
     }
@@ -4,6 +4,8 @@ import com.abin.mallchat.common.chat.dao.MessageDao;
 import com.abin.mallchat.common.chat.dao.MessageMarkDao;
 import com.abin.mallchat.common.chat.domain.dto.ChatMessageMarkDTO;
 import com.abin.mallchat.common.chat.domain.entity.Message;
+import com.abin.mallchat.common.chat.service.cache.MsgCache;
+import com.abin.mallchat.common.chat.service.cache.RoomRecentMsgCache;
 import com.abin.mallchat.common.chat.domain.enums.MessageMarkTypeEnum;
 import com.abin.mallchat.common.chat.domain.enums.MessageTypeEnum;
 import com.abin.mallchat.common.common.domain.enums.IdempotentEnum;
@@ -36,6 +38,10 @@ public class MessageMarkListener {
     private IUserBackpackService iUserBackpackService;
     @Autowired
     private PushService pushService;
+    @Autowired
+    private MsgCache msgCache;
+    @Autowired
+    private RoomRecentMsgCache roomRecentMsgCache;
 
     @Async
     @TransactionalEventListener(classes = MessageMarkEvent.class, fallbackExecution = true)
@@ -56,6 +62,15 @@ public class MessageMarkListener {
         }
     }
 
+    @Async
+    @TransactionalEventListener(classes = MessageMarkEvent.class, fallbackExecution = true)
+    public void evictRecentMsg(MessageMarkEvent event) {
+        Message msg = msgCache.getMsg(event.getDto().getMsgId());
+        if (Objects.nonNull(msg)) {
+            roomRecentMsgCache.evict(msg.getRoomId());
+        }
+    }
+
     @Async
     @TransactionalEventListener(classes = MessageMarkEvent.class, fallbackExecution = true)
     public void notifyAll(MessageMarkEvent event) {//后续可做合并查询，目前异步影响不大
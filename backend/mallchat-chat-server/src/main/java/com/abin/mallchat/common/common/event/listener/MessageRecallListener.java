@@ -3,6 +3,7 @@ package com.abin.mallchat.common.common.event.listener;
 import com.abin.mallchat.common.chat.domain.dto.ChatMsgRecallDTO;
 import com.abin.mallchat.common.chat.service.ChatService;
 import com.abin.mallchat.common.chat.service.cache.MsgCache;
+import com.abin.mallchat.common.chat.service.cache.RoomRecentMsgCache;
 import com.abin.mallchat.common.common.event.MessageRecallEvent;
 import com.abin.mallchat.common.user.service.WebSocketService;
 import com.abin.mallchat.common.user.service.adapter.WSAdapter;
@@ -28,6 +29,8 @@ public class MessageRecallListener {
     @Autowired
     private MsgCache msgCache;
     @Autowired
+    private RoomRecentMsgCache roomRecentMsgCache;
+    @Autowired
     private PushService pushService;
 
     @Async
@@ -35,6 +38,7 @@ public class MessageRecallListener {
     public void evictMsg(MessageRecallEvent event) {
         ChatMsgRecallDTO recallDTO = event.getRecallDTO();
         msgCache.evictMsg(recallDTO.getMsgId());
+        roomRecentMsgCache.evict(recallDTO.getRoomId());
     }
 
     @Async
@@ -1,13 +1,13 @@
 package com.abin.mallchat.common.common.event.listener;
 
 import com.abin.mallchat.common.chat.dao.ContactDao;
-import com.abin.mallchat.common.chat.dao.MessageDao;
 import com.abin.mallchat.common.chat.dao.RoomDao;
 import com.abin.mallchat.common.chat.dao.RoomFriendDao;
 import com.abin.mallchat.common.chat.domain.entity.Message;
 import com.abin.mallchat.common.chat.domain.entity.Room;
 import com.abin.mallchat.common.chat.domain.enums.HotFlagEnum;
 import com.abin.mallchat.common.chat.service.ChatService;
+import com.abin.mallchat.common.chat.service.UrlPreviewService;
 import com.abin.mallchat.common.chat.service.WeChatMsgOperationService;
 import com.abin.mallchat.common.chat.service.cache.GroupMemberCache;
 import com.abin.mallchat.common.chat.service.cache.HotRoomCache;
@@ -42,8 +42,6 @@ public class MessageSendListener {
     @Autowired
     private ChatService chatService;
     @Autowired
-    private MessageDao messageDao;
-    @Autowired
     private IChatAIService openAIService;
     @Autowired
     WeChatMsgOperationService weChatMsgOperationService;
@@ -65,16 +63,18 @@ public class MessageSendListener {
     private HotRoomCache hotRoomCache;
     @Autowired
     private MQProducer mqProducer;
+    @Autowired
+    private UrlPreviewService urlPreviewService;
 
     @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, classes = MessageSendEvent.class, fallbackExecution = true)
     public void messageRoute(MessageSendEvent event) {
         Long msgId = event.getMsgId();
-        mqProducer.sendSecureMsg(MQConstant.SEND_MSG_TOPIC, new MsgSendMessageDTO(msgId), msgId);
+        mqProducer.sendSecureMsg(MQConstant.SEND_MSG_TOPIC, new MsgSendMessageDTO(msgId, event.getMessage()), msgId);
     }
 
     @TransactionalEventListener(classes = MessageSendEvent.class, fallbackExecution = true)
     public void handlerMsg(@NotNull MessageSendEvent event) {
-        Message message = messageDao.getById(event.getMsgId());
+        Message message = event.getMessage();
         Room room = roomCache.get(message.getRoomId());
 //        if (isHotRoom(room)) {
 //            openAIService.chat(message);
@@ -82,6 +82,14 @@ public class MessageSendListener {
         openAIService.chat(message); // 无论那个房间都要推送
     }
 
+    /**
+     * 解析消息里的链接预览，只提交到解析线程池，不在当前线程做网络请求和等待，解析完推送消息更新
+     */
+    @TransactionalEventListener(classes = MessageSendEvent.class, fallbackExecution = true)
+    public void urlPreview(@NotNull MessageSendEvent event) {
+        urlPreviewService.enrichMsg(event.getMessage());
+    }
+
     public boolean isHotRoom(Room room) {
         return Objects.equals(HotFlagEnum.YES.getType(), room.getHotFlag());
     }
@@ -92,7 +100,7 @@ public class MessageSendListener {
      */
     @TransactionalEventListener(classes = MessageSendEvent.class, fallbackExecution = true)
     public void publishChatToWechat(@NotNull MessageSendEvent event) {
-        Message message = messageDao.getById(event.getMsgId());
+        Message message = event.getMessage();
         if (Objects.nonNull(message.getExtra().getAtUidList())) {
             weChatMsgOperationService.publishChatMsgToWeChatUser(message.getFromUid(), message.getExtra().getAtUidList(),
                     message.getContent());
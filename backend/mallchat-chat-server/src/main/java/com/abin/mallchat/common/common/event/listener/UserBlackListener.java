@@ -6,6 +6,7 @@ import com.abin.mallchat.common.user.domain.enums.WSBaseResp;
 import com.abin.mallchat.common.user.domain.enums.WSRespTypeEnum;
 import com.abin.mallchat.common.user.domain.vo.response.ws.WSBlack;
 import com.abin.mallchat.common.user.service.WebSocketService;
+import com.abin.mallchat.common.chat.service.cache.RoomRecentMsgCache;
 import com.abin.mallchat.common.user.service.cache.UserCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -24,6 +25,8 @@ public class UserBlackListener {
     @Autowired
     private MessageDao messageDao;
     @Autowired
+    private RoomRecentMsgCache roomRecentMsgCache;
+    @Autowired
     private WebSocketService webSocketService;
     @Autowired
     private UserCache userCache;
@@ -39,6 +42,7 @@ public class UserBlackListener {
     @EventListener(classes = UserBlackEvent.class)
     public void deleteMsg(UserBlackEvent event) {
         messageDao.invalidByUid(event.getUser().getId());
+        messageDao.getRoomIdsByFromUid(event.getUser().getId()).forEach(roomRecentMsgCache::evict);
     }
 
     @Async
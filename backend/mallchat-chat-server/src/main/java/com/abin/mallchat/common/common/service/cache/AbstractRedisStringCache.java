@@ -2,21 +2,57 @@ package com.abin.mallchat.common.common.service.cache;
 
 import cn.hutool.core.collection.CollectionUtil;
 import com.abin.mallchat.common.common.utils.RedisUtils;
+import com.abin.mallchat.utils.JsonUtils;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.util.Pair;
 
+import javax.annotation.PostConstruct;
 import java.lang.reflect.ParameterizedType;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
  * Description: redis string类型的批量缓存框架
+ * 可选开启本地一级缓存（{@link #getLocalExpireSeconds()}返回非空），读顺序为本地->redis->数据库，
+ * 删除时通过{@link LocalCacheInvalidator}通知所有节点删除本地副本。
+ * 同一个key同时只有一个线程回源，数据库里不存在的数据会缓存一个短期的空值标记，避免缓存击穿和穿透
  * Author: <a href="https://github.com/zongzibinbin">abin</a>
  * Date: 2023-06-10
  */
 public abstract class AbstractRedisStringCache<IN, OUT> implements BatchCache<IN, OUT> {
+    /**
+     * 数据库里不存在的数据在redis里的空值标记
+     */
+    private static final String NULL_MARKER = "@null";
+    /**
+     * 等待其他线程回源的最长时间
+     */
+    private static final long LOAD_WAIT_MILLIS = 3000L;
 
     private Class<OUT> outClass;
 
+    private final CacheStats cacheStats = new CacheStats();
+
+    /**
+     * 正在回源的key
+     */
+    private final ConcurrentHashMap<IN, CompletableFuture<Optional<OUT>>> loadingMap = new ConcurrentHashMap<>();
+
+    @Autowired
+    private LocalCacheInvalidator localCacheInvalidator;
+
+    /**
+     * 本地一级缓存，key和redis的key一致，没开启时为null
+     */
+    private Cache<String, OUT> localCache;
+
     protected AbstractRedisStringCache() {
         ParameterizedType genericSuperclass = (ParameterizedType) this.getClass().getGenericSuperclass();
         this.outClass = (Class<OUT>) genericSuperclass.getActualTypeArguments()[1];
@@ -28,6 +64,49 @@ public abstract class AbstractRedisStringCache<IN, OUT> implements BatchCache<IN
 
     protected abstract Map<IN, OUT> load(List<IN> req);
 
+    /**
+     * 空值标记的过期时间，防止不存在的id反复打到数据库。数据新建后最多这么久才能查到，需要更快可以主动delete
+     */
+    protected Long getNullExpireSeconds() {
+        return 60L;
+    }
+
+    /**
+     * 本地缓存的过期时间，返回null表示不开启本地缓存。
+     * 过期时间兜底跨节点失效通知丢失的情况，应该远小于redis的过期时间
+     */
+    protected Long getLocalExpireSeconds() {
+        return null;
+    }
+
+    /**
+     * 本地缓存的最大条数
+     */
+    protected long getLocalMaximumSize() {
+        return 10000L;
+    }
+
+    @PostConstruct
+    public void initLocalCache() {
+        Long localExpireSeconds = getLocalExpireSeconds();
+        if (Objects.isNull(localExpireSeconds)) {
+            return;
+        }
+        localCache = Caffeine.newBuilder()
+                .expireAfterWrite(localExpireSeconds, TimeUnit.SECONDS)
+                .maximumSize(getLocalMaximumSize())
+                .build();
+        localCacheInvalidator.register(getCacheName(), keys -> localCache.invalidateAll(keys));
+    }
+
+    protected String getCacheName() {
+        return this.getClass().getSimpleName();
+    }
+
+    public CacheStats getCacheStats() {
+        return cacheStats;
+    }
+
     @Override
     public OUT get(IN req) {
         return getBatch(Collections.singletonList(req)).get(req);
@@ -40,37 +119,121 @@ public abstract class AbstractRedisStringCache<IN, OUT> implements BatchCache<IN
         }
         //去重
         req = req.stream().distinct().collect(Collectors.toList());
+        Map<IN, OUT> resultMap = new HashMap<>();
+        //先查本地缓存
+        List<IN> redisReqs = req;
+        if (Objects.nonNull(localCache)) {
+            redisReqs = new ArrayList<>();
+            for (IN in : req) {
+                OUT out = localCache.getIfPresent(getKey(in));
+                if (Objects.nonNull(out)) {
+                    resultMap.put(in, out);
+                } else {
+                    redisReqs.add(in);
+                }
+            }
+            cacheStats.recordLocalHit(resultMap.size());
+            if (redisReqs.isEmpty()) {
+                return resultMap;
+            }
+        }
         //组装key
-        List<String> keys = req.stream().map(this::getKey).collect(Collectors.toList());
+        List<String> keys = redisReqs.stream().map(this::getKey).collect(Collectors.toList());
         //批量get
-        List<OUT> valueList = RedisUtils.mget(keys, outClass);
-        //差集计算
+        List<String> valueList = RedisUtils.mgetStr(keys);
+        //差集计算，空值标记说明数据库里也没有，不用再回源
         List<IN> loadReqs = new ArrayList<>();
         for (int i = 0; i < valueList.size(); i++) {
-            if (Objects.isNull(valueList.get(i))) {
-                loadReqs.add(req.get(i));
+            String value = valueList.get(i);
+            if (Objects.isNull(value)) {
+                loadReqs.add(redisReqs.get(i));
+            } else if (!NULL_MARKER.equals(value)) {
+                OUT out = JsonUtils.toObj(value, outClass);
+                resultMap.put(redisReqs.get(i), out);
+                if (Objects.nonNull(localCache) && Objects.nonNull(out)) {
+                    localCache.put(keys.get(i), out);
+                }
             }
         }
-        Map<IN, OUT> load = new HashMap<>();
+        cacheStats.recordRedisHit(redisReqs.size() - loadReqs.size());
         //不足的重新加载进redis
         if (CollectionUtil.isNotEmpty(loadReqs)) {
-            //批量load
-            load = load(loadReqs);
-            Map<String, OUT> loadMap = load.entrySet().stream()
-                    .map(a -> Pair.of(getKey(a.getKey()), a.getValue()))
-                    .collect(Collectors.toMap(Pair::getFirst, Pair::getSecond));
-            RedisUtils.mset(loadMap, getExpireSeconds());
+            cacheStats.recordLoad(loadReqs.size());
+            loadSingleFlight(loadReqs).forEach((in, out) -> {
+                resultMap.put(in, out);
+                if (Objects.nonNull(localCache) && Objects.nonNull(out)) {
+                    localCache.put(getKey(in), out);
+                }
+            });
         }
+        //不存在的数据也放进结果里，和以前保持一致
+        req.forEach(in -> resultMap.putIfAbsent(in, null));
+        return resultMap;
+    }
 
-        //组装最后的结果
-        Map<IN, OUT> resultMap = new HashMap<>();
-        for (int i = 0; i < req.size(); i++) {
-            IN in = req.get(i);
-            OUT out = Optional.ofNullable(valueList.get(i))
-                    .orElse(load.get(in));
-            resultMap.put(in, out);
+    /**
+     * 同一个key同时只有一个线程回源，其他线程等它的结果，热点key被删除时不会同时打到数据库
+     *
+     * @return 查到的数据，不存在的不在结果里
+     */
+    private Map<IN, OUT> loadSingleFlight(List<IN> loadReqs) {
+        Map<IN, CompletableFuture<Optional<OUT>>> ownMap = new HashMap<>();
+        Map<IN, CompletableFuture<Optional<OUT>>> waitMap = new HashMap<>();
+        for (IN in : loadReqs) {
+            CompletableFuture<Optional<OUT>> future = new CompletableFuture<>();
+            CompletableFuture<Optional<OUT>> loading = loadingMap.putIfAbsent(in, future);
+            if (Objects.isNull(loading)) {
+                ownMap.put(in, future);
+            } else {
+                waitMap.put(in, loading);
+            }
         }
-        return resultMap;
+        Map<IN, OUT> result = new HashMap<>();
+        if (!ownMap.isEmpty()) {
+            try {
+                Map<IN, OUT> load = loadAndCache(new ArrayList<>(ownMap.keySet()));
+                result.putAll(load);
+                ownMap.forEach((in, future) -> future.complete(Optional.ofNullable(load.get(in))));
+            } catch (RuntimeException e) {
+                ownMap.values().forEach(future -> future.completeExceptionally(e));
+                throw e;
+            } finally {
+                ownMap.forEach(loadingMap::remove);
+            }
+        }
+        //等待别的线程回源的结果，等不到就自己查
+        List<IN> fallbackReqs = new ArrayList<>();
+        waitMap.forEach((in, future) -> {
+            try {
+                future.get(LOAD_WAIT_MILLIS, TimeUnit.MILLISECONDS).ifPresent(out -> result.put(in, out));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fallbackReqs.add(in);
+            } catch (ExecutionException | TimeoutException e) {
+                fallbackReqs.add(in);
+            }
+        });
+        if (!fallbackReqs.isEmpty()) {
+            result.putAll(load(fallbackReqs));
+        }
+        return result;
+    }
+
+    /**
+     * 回源数据库并写回redis，不存在的数据写入短期的空值标记
+     */
+    private Map<IN, OUT> loadAndCache(List<IN> loadReqs) {
+        Map<IN, OUT> load = load(loadReqs);
+        Map<String, OUT> loadMap = load.entrySet().stream()
+                .filter(a -> Objects.nonNull(a.getValue()))
+                .map(a -> Pair.of(getKey(a.getKey()), a.getValue()))
+                .collect(Collectors.toMap(Pair::getFirst, Pair::getSecond));
+        RedisUtils.mset(loadMap, getExpireSeconds());
+        Map<String, String> nullMap = loadReqs.stream()
+                .filter(in -> Objects.isNull(load.get(in)))
+                .collect(Collectors.toMap(this::getKey, in -> NULL_MARKER));
+        RedisUtils.msetStr(nullMap, getNullExpireSeconds());
+        return load;
     }
 
     @Override
@@ -82,5 +245,9 @@ public abstract class AbstractRedisStringCache<IN, OUT> implements BatchCache<IN
     public void deleteBatch(List<IN> req) {
         List<String> keys = req.stream().map(this::getKey).collect(Collectors.toList());
         RedisUtils.del(keys);
+        if (Objects.nonNull(localCache)) {
+            localCache.invalidateAll(keys);
+            localCacheInvalidator.publish(getCacheName(), keys);
+        }
     }
 }
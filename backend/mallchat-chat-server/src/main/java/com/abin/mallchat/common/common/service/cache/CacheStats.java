@@ -0,0 +1,73 @@
+package com.abin.mallchat.common.common.service.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Description: 批量缓存的命中统计
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+public class CacheStats {
+    /**
+     * 本地缓存命中数
+     */
+    private final LongAdder localHitCount = new LongAdder();
+    /**
+     * redis命中数
+     */
+    private final LongAdder redisHitCount = new LongAdder();
+    /**
+     * 回源数据库的次数（按key计）
+     */
+    private final LongAdder loadCount = new LongAdder();
+
+    void recordLocalHit(int count) {
+        localHitCount.add(count);
+    }
+
+    void recordRedisHit(int count) {
+        redisHitCount.add(count);
+    }
+
+    void recordLoad(int count) {
+        loadCount.add(count);
+    }
+
+    public long getLocalHitCount() {
+        return localHitCount.sum();
+    }
+
+    public long getRedisHitCount() {
+        return redisHitCount.sum();
+    }
+
+    public long getLoadCount() {
+        return loadCount.sum();
+    }
+
+    public long getRequestCount() {
+        return getLocalHitCount() + getRedisHitCount() + getLoadCount();
+    }
+
+    /**
+     * 本地缓存命中率
+     */
+    public double getLocalHitRatio() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) getLocalHitCount() / requestCount;
+    }
+
+    /**
+     * 整体命中率（本地+redis）
+     */
+    public double getHitRatio() {
+        long requestCount = getRequestCount();
+        return requestCount == 0 ? 1.0 : (double) (getLocalHitCount() + getRedisHitCount()) / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "localHit=" + getLocalHitCount() + ", redisHit=" + getRedisHitCount() + ", load=" + getLoadCount()
+                + ", localHitRatio=" + String.format("%.4f", getLocalHitRatio()) + ", hitRatio=" + String.format("%.4f", getHitRatio());
+    }
+}
@@ -0,0 +1,31 @@
+package com.abin.mallchat.common.common.service.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Description: 定时输出各个批量缓存的命中率
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Slf4j
+@Component
+public class CacheStatsReporter {
+
+    @Autowired
+    private List<AbstractRedisStringCache<?, ?>> caches;
+
+    @Scheduled(cron = "0 */5 * * * ?")
+    public void report() {
+        for (AbstractRedisStringCache<?, ?> cache : caches) {
+            CacheStats cacheStats = cache.getCacheStats();
+            if (cacheStats.getRequestCount() > 0) {
+                log.info("缓存命中统计 cache:{} {}", cache.getCacheName(), cacheStats);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.abin.mallchat.common.common.service.cache;
+
+import com.abin.mallchat.utils.JsonUtils;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.StringCodec;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Description: 本地缓存跨节点失效
+ * 二级缓存的本地一级只在当前节点生效，删除缓存时通过redis的发布订阅通知所有节点一起删掉本地副本
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Slf4j
+@Component
+public class LocalCacheInvalidator {
+    private static final String TOPIC = "mallchat:localCacheInvalidate";
+
+    @Autowired
+    private RedissonClient redissonClient;
+
+    private RTopic topic;
+
+    /**
+     * cacheName -> 本地删除逻辑
+     */
+    private final Map<String, Consumer<List<String>>> evictorMap = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        topic = redissonClient.getTopic(TOPIC, StringCodec.INSTANCE);
+        topic.addListener(String.class, (channel, msg) -> {
+            InvalidateMessage message = JsonUtils.toObj(msg, InvalidateMessage.class);
+            Consumer<List<String>> evictor = evictorMap.get(message.getCacheName());
+            if (Objects.nonNull(evictor)) {
+                evictor.accept(message.getKeys());
+            }
+        });
+    }
+
+    public void register(String cacheName, Consumer<List<String>> evictor) {
+        evictorMap.put(cacheName, evictor);
+    }
+
+    /**
+     * 通知所有节点（包括自己）删除本地缓存
+     */
+    public void publish(String cacheName, List<String> keys) {
+        try {
+            topic.publish(JsonUtils.toStr(new InvalidateMessage(cacheName, keys)));
+        } catch (Exception e) {//通知失败只能等本地缓存自然过期
+            log.error("本地缓存失效通知失败 cacheName:{} keys:{}", cacheName, keys, e);
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class InvalidateMessage {
+        private String cacheName;
+        private List<String> keys;
+    }
+}
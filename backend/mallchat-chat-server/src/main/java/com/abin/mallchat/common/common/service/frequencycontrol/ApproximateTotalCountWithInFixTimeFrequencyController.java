@@ -0,0 +1,229 @@
+package com.abin.mallchat.common.common.service.frequencycontrol;
+
+import com.abin.mallchat.common.common.constant.RedisKey;
+import com.abin.mallchat.common.common.domain.dto.FrequencyControlDTO;
+import com.abin.mallchat.common.common.factory.MyThreadFactory;
+import com.abin.mallchat.common.common.utils.RedisUtils;
+import com.abin.mallchat.common.websocket.WSNodeIdEnvironmentPostProcessor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.abin.mallchat.common.common.service.frequencycontrol.FrequencyControlStrategyFactory.APPROXIMATE_TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER;
+
+/**
+ * 抽象类频控服务 -固定时间内不超过固定次数的近似限流类，请求只在本地判断，不访问redis
+ * 时间窗口按时间戳对齐，每个节点先只用总次数里平分给自己的那份，后台定时把本地计数累加到redis，
+ * 顺便拿到其他节点用掉的次数，之后本节点最多用到总次数减去其他节点用掉的。
+ * 对账间隔内多个节点同时放行时会多放过几次，需要严格限制的频控用{@link TotalCountWithInFixTimeFrequencyController}
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Slf4j
+@Service
+public class ApproximateTotalCountWithInFixTimeFrequencyController extends AbstractFrequencyControlService<FrequencyControlDTO> {
+    /**
+     * 和redis对账的间隔
+     */
+    private static final long RECONCILE_INTERVAL_MILLIS = 200;
+    /**
+     * 节点心跳间隔
+     */
+    private static final long HEARTBEAT_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+    /**
+     * 超过这个时间没心跳的节点不再参与分配
+     */
+    private static final long NODE_EXPIRE_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    @Value("${" + WSNodeIdEnvironmentPostProcessor.NODE_ID_PROPERTY + "}")
+    private String nodeId;
+
+    /**
+     * 频控key -> 当前窗口的本地计数
+     */
+    private final Map<String, LocalWindow> windowMap = new ConcurrentHashMap<>();
+
+    private volatile int nodeCount = 1;
+
+    private long lastHeartbeatTime;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new MyThreadFactory(r -> new Thread(r, "frequency-control-reconciler")));
+
+    @PostConstruct
+    public void init() {
+        scheduler.scheduleWithFixedDelay(this::reconcile, RECONCILE_INTERVAL_MILLIS, RECONCILE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        //停机前把没同步的计数交上去
+        reconcile();
+    }
+
+    /**
+     * 是否达到限流阈值，没有限流时已经在本地计数了，有一个频控不通过前面计的都退回
+     *
+     * @param frequencyControlMap 定义的注解频控 Map中的Key-对应redis的单个频控的Key Map中的Value-对应redis的单个频控的Key限制的Value
+     * @return true-方法被限流 false-方法没有被限流
+     */
+    @Override
+    protected boolean reachRateLimit(Map<String, FrequencyControlDTO> frequencyControlMap) {
+        long now = System.currentTimeMillis();
+        List<LocalWindow> admitted = new ArrayList<>();
+        for (Map.Entry<String, FrequencyControlDTO> entry : frequencyControlMap.entrySet()) {
+            LocalWindow window = getWindow(entry.getKey(), entry.getValue(), now);
+            if (!window.tryAdmit(nodeCount)) {
+                admitted.forEach(LocalWindow::refund);
+                log.warn("frequencyControl limit key:{},localCount:{}", entry.getKey(), window.count.get());
+                return true;
+            }
+            admitted.add(window);
+        }
+        return false;
+    }
+
+    /**
+     * 计数已经在{@link #reachRateLimit}里完成了
+     */
+    @Override
+    protected void addFrequencyControlStatisticsCount(Map<String, FrequencyControlDTO> frequencyControlMap) {
+    }
+
+    @Override
+    protected String getStrategyName() {
+        return APPROXIMATE_TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER;
+    }
+
+    private LocalWindow getWindow(String key, FrequencyControlDTO dto, long now) {
+        long windowMillis = dto.getUnit().toMillis(dto.getTime());
+        long windowId = now / windowMillis;
+        //进入新窗口时上个窗口没交的计数已经没用了，直接换掉
+        return windowMap.compute(key, (k, old) -> old != null && old.windowId == windowId
+                ? old : new LocalWindow(windowId, windowMillis, dto.getCount()));
+    }
+
+    private void reconcile() {
+        try {
+            long now = System.currentTimeMillis();
+            heartbeat(now);
+            List<String> keys = new ArrayList<>();
+            List<Long> deltas = new ArrayList<>();
+            List<Long> expireMillis = new ArrayList<>();
+            List<LocalWindow> windows = new ArrayList<>();
+            windowMap.forEach((key, window) -> {
+                long windowEnd = (window.windowId + 1) * window.windowMillis;
+                if (windowEnd <= now) {//窗口结束了，清理掉
+                    windowMap.remove(key, window);
+                    return;
+                }
+                //没有新计数的窗口也要读一下，不然本节点不放行之后就拿不到其他节点用掉的次数，会按旧值一直放行
+                int delta = window.unflushed.getAndSet(0);
+                window.flushed += delta;
+                keys.add(RedisKey.getKey(RedisKey.FREQUENCY_CONTROL_APPROXIMATE_STRING, key, window.windowId));
+                deltas.add((long) delta);
+                expireMillis.add(windowEnd - now);
+                windows.add(window);
+            });
+            if (keys.isEmpty()) {
+                return;
+            }
+            List<Long> totals;
+            try {
+                totals = RedisUtils.incrByAndExpireBatch(keys, deltas, expireMillis);
+            } catch (Exception e) {//没交上去的下次再交
+                for (int i = 0; i < windows.size(); i++) {
+                    windows.get(i).flushed -= deltas.get(i);
+                    windows.get(i).unflushed.addAndGet(deltas.get(i).intValue());
+                }
+                throw e;
+            }
+            for (int i = 0; i < windows.size(); i++) {
+                LocalWindow window = windows.get(i);
+                window.othersCount = (int) Math.max(0, totals.get(i) - window.flushed);
+            }
+        } catch (Exception e) {
+            log.error("frequencyControl reconcile error", e);
+        }
+    }
+
+    /**
+     * 上报心跳并刷新节点数，节点数决定还没对账的窗口本地能用多少次
+     */
+    private void heartbeat(long now) {
+        if (now - lastHeartbeatTime < HEARTBEAT_INTERVAL_MILLIS) {
+            return;
+        }
+        lastHeartbeatTime = now;
+        String key = RedisKey.getKey(RedisKey.FREQUENCY_CONTROL_NODE_ZET);
+        RedisUtils.zAdd(key, nodeId, now);
+        RedisUtils.zRemoveRangeByScore(key, 0, now - NODE_EXPIRE_MILLIS);
+        nodeCount = Math.max(1, RedisUtils.zCard(key).intValue());
+    }
+
+    private static class LocalWindow {
+        private final long windowId;
+        private final long windowMillis;
+        private final int limit;
+        /**
+         * 本节点在这个窗口放行的次数
+         */
+        private final AtomicInteger count = new AtomicInteger();
+        /**
+         * 还没累加到redis的次数
+         */
+        private final AtomicInteger unflushed = new AtomicInteger();
+        /**
+         * 已经累加到redis的次数，只在对账线程里读写
+         */
+        private long flushed;
+        /**
+         * 上次对账时其他节点用掉的次数，还没对过账时为-1
+         */
+        private volatile int othersCount = -1;
+
+        LocalWindow(long windowId, long windowMillis, int limit) {
+            this.windowId = windowId;
+            this.windowMillis = windowMillis;
+            this.limit = limit;
+        }
+
+        boolean tryAdmit(int nodeCount) {
+            int others = othersCount;
+            //没对过账只能用平分的那份，对过账后可以用完其他节点剩下的
+            int localLimit = others < 0 ? (limit + nodeCount - 1) / nodeCount : limit - others;
+            while (true) {
+                int current = count.get();
+                if (current >= localLimit) {
+                    return false;
+                }
+                if (count.compareAndSet(current, current + 1)) {
+                    unflushed.incrementAndGet();
+                    return true;
+                }
+            }
+        }
+
+        void refund() {
+            count.decrementAndGet();
+            unflushed.decrementAndGet();
+        }
+    }
+}
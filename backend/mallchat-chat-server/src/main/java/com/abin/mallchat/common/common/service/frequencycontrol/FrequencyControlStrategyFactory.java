@@ -16,6 +16,10 @@ public class FrequencyControlStrategyFactory {
      * 指定时间内总次数限流
      */
     public static final String TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER = "TotalCountWithInFixTime";
+    /**
+     * 指定时间内总次数限流-近似模式，本地判断，异步和redis对账
+     */
+    public static final String APPROXIMATE_TOTAL_COUNT_WITH_IN_FIX_TIME_FREQUENCY_CONTROLLER = "ApproximateTotalCountWithInFixTime";
     /**
      * 限流策略集合
      */
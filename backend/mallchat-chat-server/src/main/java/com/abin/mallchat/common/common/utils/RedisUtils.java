@@ -5,15 +5,20 @@ import com.abin.mallchat.utils.JsonUtils;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStringCommands;
 import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
 import org.springframework.data.redis.core.RedisConnectionUtils;
 import org.springframework.data.redis.core.ScanOptions;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
 import org.springframework.data.redis.core.script.DefaultRedisScript;
 import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.core.types.Expiration;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -36,6 +41,42 @@ public class RedisUtils {
                     "  return tonumber(redis.call('INCR',key)) \n" +
                     "end ";
 
+    /**
+     * 多个hash表的同一项存在时才递增，一次处理一批key
+     */
+    private static final RedisScript<Long> HINCR_IF_PRESENT_SCRIPT = new DefaultRedisScript<>(
+            "for i=1,#KEYS do \n" +
+                    "  if redis.call('HEXISTS',KEYS[i],ARGV[1])==1 then \n" +
+                    "    redis.call('HINCRBY',KEYS[i],ARGV[1],ARGV[2]) \n" +
+                    "  end \n" +
+                    "end \n" +
+                    "return #KEYS ", Long.class);
+
+    /**
+     * 批量执行脚本时每次带的key数，避免单个脚本执行太久阻塞redis
+     */
+    private static final int SCRIPT_BATCH_SIZE = 500;
+
+    /**
+     * 自增，不设置过期时间
+     *
+     * @param key 键
+     * @return 自增后的值
+     */
+    public static Long incr(String key) {
+        return stringRedisTemplate.opsForValue().increment(key);
+    }
+
+    /**
+     * 执行lua脚本
+     *
+     * @return 脚本返回的整数，脚本返回nil时为null
+     */
+    public static Long execute(String script, List<String> keys, String... args) {
+        RedisScript<Long> redisScript = new DefaultRedisScript<>(script, Long.class);
+        return stringRedisTemplate.execute(redisScript, keys, (Object[]) args);
+    }
+
     public static Long inc(String key, int time, TimeUnit unit) {
         RedisScript<Long> redisScript = new DefaultRedisScript<>(LUA_INCR_EXPIRE, Long.class);
         return stringRedisTemplate.execute(redisScript, Collections.singletonList(key), String.valueOf(unit.toSeconds(time)));
@@ -278,14 +319,56 @@ public class RedisUtils {
         return JsonUtils.toStr(o);
     }
 
+    /**
+     * 批量获取原始字符串
+     *
+     * @return 和keys一一对应，不存在的key返回null
+     */
+    public static List<String> mgetStr(Collection<String> keys) {
+        List<String> list = stringRedisTemplate.opsForValue().multiGet(keys);
+        return Objects.isNull(list) ? new ArrayList<>(Collections.nCopies(keys.size(), null)) : list;
+    }
+
+    /**
+     * 批量写入并设置过期时间，过期时间会加上随机抖动，避免同一批写入的key同时过期
+     *
+     * @param time 时间(秒) 小于等于0不过期
+     */
     public static <T> void mset(Map<String, T> map, long time) {
         Map<String, String> collect = map.entrySet().stream().collect(Collectors.toMap(Map.Entry::getKey, (e) -> objToStr(e.getValue())));
-        stringRedisTemplate.opsForValue().multiSet(collect);
-        map.forEach((key, value) -> {
-            expire(key, time);
+        msetStr(collect, time);
+    }
+
+    /**
+     * 批量写入原始字符串并设置过期时间，过期时间会加上随机抖动
+     *
+     * @param time 时间(秒) 小于等于0不过期
+     */
+    public static void msetStr(Map<String, String> map, long time) {
+        if (map.isEmpty()) {
+            return;
+        }
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            map.forEach((key, value) -> {
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+                if (time > 0) {
+                    connection.stringCommands().set(keyBytes, valueBytes, Expiration.seconds(jitter(time)), RedisStringCommands.SetOption.UPSERT);
+                } else {
+                    connection.stringCommands().set(keyBytes, valueBytes);
+                }
+            });
+            return null;
         });
     }
 
+    /**
+     * 过期时间加上最多10%的随机抖动
+     */
+    private static long jitter(long time) {
+        return time + ThreadLocalRandom.current().nextLong(time / 10 + 1);
+    }
+
 
     /**
      * 普通缓存放入并设置时间
@@ -455,6 +538,102 @@ public class RedisUtils {
         return stringRedisTemplate.opsForHash().hasKey(key, item);
     }
 
+    /**
+     * 批量获取hash表中的值
+     *
+     * @param key   键
+     * @param items 项
+     * @return 和items一一对应，不存在的项返回null
+     */
+    public static List<String> hmultiGet(String key, Collection<String> items) {
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(key, new ArrayList<>(items));
+        return values.stream().map(value -> (String) value).collect(Collectors.toList());
+    }
+
+    /**
+     * 项不存在时才写入
+     *
+     * @param key   键
+     * @param item  项
+     * @param value 值
+     * @return 是否写入
+     */
+    public static Boolean hsetIfAbsent(String key, String item, Object value) {
+        return stringRedisTemplate.opsForHash().putIfAbsent(key, item, value.toString());
+    }
+
+    /**
+     * 批量对多个hash表的同一项递增，项不存在时不创建（不存在说明还没初始化，由读的时候回源）
+     *
+     * @param keys 键
+     * @param item 项
+     * @param by   要增加几
+     */
+    public static void hincrIfPresentBatch(List<String> keys, String item, long by) {
+        executeBatch(HINCR_IF_PRESENT_SCRIPT, keys, item, String.valueOf(by));
+    }
+
+    /**
+     * 执行共享的脚本，RedisTemplate先用EVALSHA，脚本不在redis里时才发送脚本内容
+     *
+     * @param script 共享的脚本，不要每次新建
+     * @return 脚本的返回值，脚本返回nil时为null
+     */
+    public static <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        return stringRedisTemplate.execute(script, keys, args);
+    }
+
+    /**
+     * 对一批key执行同一个多key脚本，每次最多带{@link #SCRIPT_BATCH_SIZE}个key，
+     * 脚本要对KEYS逐个处理。RedisTemplate先用EVALSHA，脚本不在redis里时才发送脚本内容
+     *
+     * @param script 共享的脚本，不要每次新建
+     * @param keys   键
+     * @param args   每批都一样的参数
+     */
+    public static void executeBatch(RedisScript<?> script, List<String> keys, Object... args) {
+        for (int i = 0; i < keys.size(); i += SCRIPT_BATCH_SIZE) {
+            List<String> batch = keys.subList(i, Math.min(keys.size(), i + SCRIPT_BATCH_SIZE));
+            stringRedisTemplate.execute(script, batch, args);
+        }
+    }
+
+    /**
+     * 批量递增并刷新过期时间，一次管道提交，不用脚本
+     *
+     * @param keys         键
+     * @param deltas       每个键要增加几，为0时只读取当前值，不创建键也不改过期时间
+     * @param expireMillis 每个键的过期时间(毫秒)
+     * @return 递增后的值，和keys一一对应，键不存在时为0
+     */
+    public static List<Long> incrByAndExpireBatch(List<String> keys, List<Long> deltas, List<Long> expireMillis) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < keys.size(); i++) {
+                byte[] key = keys.get(i).getBytes(StandardCharsets.UTF_8);
+                if (deltas.get(i) == 0) {
+                    connection.stringCommands().get(key);
+                } else {
+                    connection.stringCommands().incrBy(key, deltas.get(i));
+                    connection.keyCommands().pExpire(key, expireMillis.get(i));
+                }
+            }
+            return null;
+        });
+        List<Long> values = new ArrayList<>(keys.size());
+        int index = 0;
+        for (Long delta : deltas) {
+            Object result = results.get(index);
+            if (delta == 0) {
+                values.add(Objects.isNull(result) ? 0L : Long.parseLong(result.toString()));
+                index++;
+            } else {//INCRBY和PEXPIRE两个返回值
+                values.add((Long) result);
+                index += 2;
+            }
+        }
+        return values;
+    }
+
     /**
      * hash递增 如果不存在,就会创建一个 并把新增后的值返回
      *
@@ -496,6 +675,47 @@ public class RedisUtils {
         }
     }
 
+    /**
+     * 批量获取多个Set的所有值，一次pipeline往返
+     *
+     * @param keys 键
+     * @return 和keys一一对应，不存在的key返回空集合
+     */
+    public static <T> List<Set<T>> sMembersBatch(List<String> keys, Class<T> tClass) {
+        List<Object> results = stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> connection.sMembers(key.getBytes(StandardCharsets.UTF_8)));
+            return null;
+        });
+        return results.stream()
+                .map(members -> {
+                    Set<T> set = new HashSet<>();
+                    if (members instanceof Collection) {
+                        ((Collection<?>) members).forEach(o -> set.add(toBeanOrNull((String) o, tClass)));
+                    }
+                    return set;
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 批量往多个Set里放入同一个值并刷新过期时间，一次pipeline往返
+     *
+     * @param keys  键
+     * @param value 值
+     * @param time  时间(秒)
+     */
+    public static void sSetAndTimeBatch(List<String> keys, Object value, long time) {
+        byte[] valueBytes = objToStr(value).getBytes(StandardCharsets.UTF_8);
+        stringRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            keys.forEach(key -> {
+                byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+                connection.sAdd(keyBytes, valueBytes);
+                connection.expire(keyBytes, time);
+            });
+            return null;
+        });
+    }
+
     /**
      * 根据value从一个set中查询,是否存在
      *
@@ -944,6 +1164,21 @@ public class RedisUtils {
         return stringRedisTemplate.opsForZSet().reverseRange(key, start, end);
     }
 
+    /**
+     * 根据Score值查询集合元素, 从大到小排序, 并返回score值
+     *
+     * @param key
+     * @param min    最小值(含)
+     * @param max    最大值(含)
+     * @param offset 跳过几个
+     * @param count  最多取几个
+     * @return
+     */
+    public static Set<TypedTuple<String>> zReverseRangeByScoreWithScores(String key, double min, double max,
+                                                                         long offset, long count) {
+        return stringRedisTemplate.opsForZSet().reverseRangeByScoreWithScores(key, min, max, offset, count);
+    }
+
 //    /**
 //     * 获取集合的元素, 从大到小排序, 并返回score值
 //     *
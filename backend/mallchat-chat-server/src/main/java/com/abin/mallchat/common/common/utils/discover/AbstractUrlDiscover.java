@@ -13,6 +13,7 @@ import org.springframework.data.util.Pair;
 
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -31,6 +32,16 @@ public abstract class AbstractUrlDiscover implements UrlDiscover {
     private static final Pattern PATTERN = Pattern.compile("((http|https)://)?(www.)?([\\w_-]+(?:(?:\\.[\\w_-]+)+))([\\w.,@?^=%&:/~+#-]*[\\w@?^=%&/~+#-])?");
 
 
+    /**
+     * 只识别消息里的链接，不发起请求
+     */
+    public static List<String> getUrlList(String content) {
+        if (StrUtil.isBlank(content)) {
+            return new ArrayList<>();
+        }
+        return ReUtil.findAll(PATTERN, content, 0).stream().distinct().collect(Collectors.toList());
+    }
+
     @Nullable
     @Override
     public Map<String, UrlInfo> getUrlContentMap(String content) {
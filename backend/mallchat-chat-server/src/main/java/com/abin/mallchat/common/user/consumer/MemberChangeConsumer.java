@@ -0,0 +1,34 @@
+package com.abin.mallchat.common.user.consumer;
+
+import com.abin.mallchat.common.common.constant.MQConstant;
+import com.abin.mallchat.common.common.domain.dto.MemberChangeMessageDTO;
+import com.abin.mallchat.common.user.domain.vo.response.ws.WSMemberChange;
+import com.abin.mallchat.common.user.service.WebSocketService;
+import org.apache.rocketmq.spring.annotation.MessageModel;
+import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
+import org.apache.rocketmq.spring.core.RocketMQListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Description: 群成员变动后，更新本节点的房间连接索引
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@RocketMQMessageListener(topic = MQConstant.MEMBER_CHANGE_TOPIC, consumerGroup = MQConstant.MEMBER_CHANGE_GROUP, messageModel = MessageModel.BROADCASTING)
+@Component
+public class MemberChangeConsumer implements RocketMQListener<MemberChangeMessageDTO> {
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Override
+    public void onMessage(MemberChangeMessageDTO message) {
+        if (Objects.equals(WSMemberChange.CHANGE_TYPE_ADD, message.getChangeType())) {
+            webSocketService.joinRoom(message.getRoomId(), message.getUidList());
+        } else if (Objects.equals(WSMemberChange.CHANGE_TYPE_REMOVE, message.getChangeType())) {
+            webSocketService.leaveRoom(message.getRoomId(), message.getUidList());
+        }
+    }
+}
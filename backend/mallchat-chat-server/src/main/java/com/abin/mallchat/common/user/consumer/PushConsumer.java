@@ -26,13 +26,14 @@ public class PushConsumer implements RocketMQListener<PushMessageDTO> {
         WSPushTypeEnum wsPushTypeEnum = WSPushTypeEnum.of(message.getPushType());
         switch (wsPushTypeEnum) {
             case USER:
-                message.getUidList().forEach(uid -> {
-                    webSocketService.sendToUid(message.getWsBaseMsg(), uid);
-                });
+                webSocketService.sendToUidList(message.getWsBaseMsg(), message.getUidList());
                 break;
             case ALL:
                 webSocketService.sendToAllOnline(message.getWsBaseMsg(), null);
                 break;
+            case ROOM:
+                webSocketService.sendToRoom(message.getWsBaseMsg(), message.getRoomId());
+                break;
         }
     }
 }
@@ -0,0 +1,30 @@
+package com.abin.mallchat.common.user.consumer;
+
+import com.abin.mallchat.common.common.constant.MQConstant;
+import com.abin.mallchat.common.common.domain.dto.PushMessageDTO;
+import com.abin.mallchat.common.user.service.WebSocketService;
+import com.abin.mallchat.common.websocket.WSNodeIdEnvironmentPostProcessor;
+import org.apache.rocketmq.spring.annotation.RocketMQMessageListener;
+import org.apache.rocketmq.spring.core.RocketMQListener;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Description: 定向推送，只消费tag是本节点id的消息
+ * 每个节点独立一个消费组，避免同组内订阅的tag不一致
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@RocketMQMessageListener(topic = MQConstant.PUSH_ROUTE_TOPIC,
+        consumerGroup = MQConstant.PUSH_ROUTE_GROUP + "_${" + WSNodeIdEnvironmentPostProcessor.NODE_ID_PROPERTY + "}",
+        selectorExpression = "${" + WSNodeIdEnvironmentPostProcessor.NODE_ID_PROPERTY + "}")
+@Component
+public class PushRouteConsumer implements RocketMQListener<PushMessageDTO> {
+    @Autowired
+    private WebSocketService webSocketService;
+
+    @Override
+    public void onMessage(PushMessageDTO message) {
+        webSocketService.sendToUidList(message.getWsBaseMsg(), message.getUidList());
+    }
+}
@@ -18,6 +18,7 @@ import java.util.stream.Collectors;
 public enum WSPushTypeEnum {
     USER(1, "个人"),
     ALL(2, "全部连接用户"),
+    ROOM(3, "房间内的连接用户"),
     ;
 
     private final Integer type;
@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -27,7 +28,9 @@ public enum WSRespTypeEnum {
     MARK(8, "消息标记", WSMsgMark.class),
     RECALL(9, "消息撤回", WSMsgRecall.class),
     APPLY(10, "好友申请", WSFriendApply.class),
-    MEMBER_CHANGE(11, "成员变动", WSMemberChange.class);
+    MEMBER_CHANGE(11, "成员变动", WSMemberChange.class),
+    BATCH(12, "批量推送，data是多条推送组成的列表", List.class),
+    MESSAGE_UPDATE(13, "消息更新，如链接预览解析完成", WSMessage.class);
 
     private final Integer type;
     private final String desc;
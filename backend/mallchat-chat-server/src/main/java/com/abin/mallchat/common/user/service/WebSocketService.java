@@ -5,6 +5,8 @@ import com.abin.mallchat.common.user.domain.vo.request.ws.WSAuthorize;
 import com.abin.mallchat.common.user.domain.vo.request.ws.WSPasswordLoginReq;
 import io.netty.channel.Channel;
 
+import java.util.List;
+
 public interface WebSocketService {
     /**
      * 处理用户登录请求，需要返回一张带code的二维码
@@ -70,4 +72,30 @@ public interface WebSocketService {
     void sendToAllOnline(WSBaseResp<?> wsBaseResp);
 
     void sendToUid(WSBaseResp<?> wsBaseResp, Long uid);
+
+    /**
+     * 推送消息给一批用户，消息只序列化一次
+     *
+     * @param wsBaseResp 发送的消息体
+     * @param uidList    推送的uid
+     */
+    void sendToUidList(WSBaseResp<?> wsBaseResp, List<Long> uidList);
+
+    /**
+     * 推送消息给房间内在本节点在线的人
+     *
+     * @param wsBaseResp 发送的消息体
+     * @param roomId     房间id
+     */
+    void sendToRoom(WSBaseResp<?> wsBaseResp, Long roomId);
+
+    /**
+     * 成员加入房间，更新本节点的房间连接索引
+     */
+    void joinRoom(Long roomId, List<Long> uidList);
+
+    /**
+     * 成员离开房间，更新本节点的房间连接索引
+     */
+    void leaveRoom(Long roomId, List<Long> uidList);
 }
@@ -18,6 +18,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.Collections;
+import java.util.List;
 
 /**
  * Description: ws消息适配器
@@ -139,6 +140,13 @@ public class WSAdapter {
         return wsBaseResp;
     }
 
+    public static WSBaseResp<ChatMessageResp> buildMsgUpdate(ChatMessageResp msgResp) {
+        WSBaseResp<ChatMessageResp> wsBaseResp = new WSBaseResp<>();
+        wsBaseResp.setType(WSRespTypeEnum.MESSAGE_UPDATE.getType());
+        wsBaseResp.setData(msgResp);
+        return wsBaseResp;
+    }
+
     public static WSBaseResp<WSMsgMark> buildMsgMarkSend(ChatMessageMarkDTO dto, Integer markCount) {
         WSMsgMark.WSMsgMarkItem item = new WSMsgMark.WSMsgMarkItem();
         BeanUtils.copyProperties(dto, item);
@@ -157,4 +165,11 @@ public class WSAdapter {
         wsBaseResp.setData(resp);
         return wsBaseResp;
     }
+
+    public static WSBaseResp<List<WSBaseResp<?>>> buildBatchResp(List<WSBaseResp<?>> respList) {
+        WSBaseResp<List<WSBaseResp<?>>> wsBaseResp = new WSBaseResp<>();
+        wsBaseResp.setType(WSRespTypeEnum.BATCH.getType());
+        wsBaseResp.setData(respList);
+        return wsBaseResp;
+    }
 }
@@ -0,0 +1,76 @@
+package com.abin.mallchat.common.user.service.cache;
+
+import cn.hutool.core.collection.CollectionUtil;
+import com.abin.mallchat.common.common.constant.RedisKey;
+import com.abin.mallchat.common.common.utils.RedisUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Description: 用户在线节点路由表
+ * 记录每个用户的连接在哪些节点上，个人推送只发给这些节点，不再全节点广播
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Component
+public class PushRouteCache {
+
+    /**
+     * 路由过期时间，节点宕机没来得及清理的路由最多残留这么久，秒
+     * 在线用户的路由由节点定时续期，见{@link #refresh}
+     */
+    public static final long ROUTE_EXPIRE_SECONDS = 24 * 60 * 60;
+    /**
+     * 续期时每批pipeline的uid数
+     */
+    private static final int REFRESH_BATCH_SIZE = 500;
+
+    public void online(Long uid, String nodeId) {
+        RedisUtils.sSetAndTime(getKey(uid), ROUTE_EXPIRE_SECONDS, nodeId);
+    }
+
+    /**
+     * 给本节点所有在线用户的路由续期，顺带补回被误删或已过期的路由
+     */
+    public void refresh(Collection<Long> uids, String nodeId) {
+        List<String> keys = uids.stream().map(this::getKey).collect(Collectors.toList());
+        for (List<String> batch : CollectionUtil.split(keys, REFRESH_BATCH_SIZE)) {
+            RedisUtils.sSetAndTimeBatch(batch, nodeId, ROUTE_EXPIRE_SECONDS);
+        }
+    }
+
+    public void offline(Long uid, String nodeId) {
+        RedisUtils.setRemove(getKey(uid), RedisUtils.objToStr(nodeId));
+    }
+
+    /**
+     * 按节点对用户分组，查不到路由的用户不在返回值里，由调用方决定怎么兜底
+     *
+     * @return 节点id -> 该节点上在线的uid
+     */
+    public Map<String, List<Long>> getNodeUidMap(List<Long> uidList) {
+        List<String> keys = uidList.stream().map(this::getKey).collect(Collectors.toList());
+        List<Set<String>> nodeList = RedisUtils.sMembersBatch(keys, String.class);
+        Map<String, List<Long>> nodeUidMap = new HashMap<>();
+        for (int i = 0; i < uidList.size(); i++) {
+            Set<String> nodes = nodeList.get(i);
+            if (CollectionUtil.isEmpty(nodes)) {
+                continue;
+            }
+            Long uid = uidList.get(i);
+            nodes.forEach(nodeId -> nodeUidMap.computeIfAbsent(nodeId, k -> new ArrayList<>()).add(uid));
+        }
+        return nodeUidMap;
+    }
+
+    private String getKey(Long uid) {
+        return RedisKey.getKey(RedisKey.PUSH_ROUTE_SET, uid);
+    }
+}
@@ -1,6 +1,5 @@
 package com.abin.mallchat.common.user.service.cache;
 
-import cn.hutool.core.collection.CollUtil;
 import cn.hutool.core.lang.Pair;
 import com.abin.mallchat.common.common.constant.RedisKey;
 import com.abin.mallchat.common.common.domain.vo.request.CursorPageBaseReq;
@@ -9,7 +8,6 @@ import com.abin.mallchat.common.common.utils.CursorUtils;
 import com.abin.mallchat.common.common.utils.RedisUtils;
 import com.abin.mallchat.common.user.dao.BlackDao;
 import com.abin.mallchat.common.user.dao.RoleDao;
-import com.abin.mallchat.common.user.dao.UserDao;
 import com.abin.mallchat.common.user.dao.UserRoleDao;
 import com.abin.mallchat.common.user.domain.entity.Black;
 import com.abin.mallchat.common.user.domain.entity.User;
@@ -20,7 +18,6 @@ import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -31,8 +28,6 @@ import java.util.stream.Collectors;
 @Component
 public class UserCache {
 
-    @Autowired
-    private UserDao userDao;
     @Autowired
     private BlackDao blackDao;
     @Autowired
@@ -41,6 +36,8 @@ public class UserCache {
     private UserRoleDao userRoleDao;
     @Autowired
     private UserSummaryCache userSummaryCache;
+    @Autowired
+    private UserInfoCache userInfoCache;
 
     public Long getOnlineNum() {
         String onlineKey = RedisKey.getKey(RedisKey.ONLINE_UID_ZET);
@@ -113,32 +110,19 @@ public class UserCache {
     }
 
     /**
-     * 获取用户信息，盘路缓存模式
+     * 获取用户信息，盘路缓存模式，走{@link UserInfoCache}的二级缓存
      */
-    public User getUserInfo(Long uid) {//todo 后期做二级缓存
-        return getUserInfoBatch(Collections.singleton(uid)).get(uid);
+    public User getUserInfo(Long uid) {
+        return userInfoCache.get(uid);
     }
 
     /**
      * 获取用户信息，盘路缓存模式
      */
     public Map<Long, User> getUserInfoBatch(Set<Long> uids) {
-        //批量组装key
-        List<String> keys = uids.stream().map(a -> RedisKey.getKey(RedisKey.USER_INFO_STRING, a)).collect(Collectors.toList());
-        //批量get
-        List<User> mget = RedisUtils.mget(keys, User.class);
-        Map<Long, User> map = mget.stream().filter(Objects::nonNull).collect(Collectors.toMap(User::getId, Function.identity()));
-        //发现差集——还需要load更新的uid
-        List<Long> needLoadUidList = uids.stream().filter(a -> !map.containsKey(a)).collect(Collectors.toList());
-        if (CollUtil.isNotEmpty(needLoadUidList)) {
-            //批量load
-            List<User> needLoadUserList = userDao.listByIds(needLoadUidList);
-            Map<String, User> redisMap = needLoadUserList.stream().collect(Collectors.toMap(a -> RedisKey.getKey(RedisKey.USER_INFO_STRING, a.getId()), Function.identity()));
-            RedisUtils.mset(redisMap, 5 * 60);
-            //加载回redis
-            map.putAll(needLoadUserList.stream().collect(Collectors.toMap(User::getId, Function.identity())));
-        }
-        return map;
+        Map<Long, User> userMap = userInfoCache.getBatch(new ArrayList<>(uids));
+        userMap.values().removeIf(Objects::isNull);
+        return userMap;
     }
 
     public void userInfoChange(Long uid) {
@@ -149,8 +133,7 @@ public class UserCache {
     }
 
     public void delUserInfo(Long uid) {
-        String key = RedisKey.getKey(RedisKey.USER_INFO_STRING, uid);
-        RedisUtils.del(key);
+        userInfoCache.delete(uid);
     }
 
     @Cacheable(cacheNames = "user", key = "'blackList'")
@@ -32,6 +32,11 @@ public class UserInfoCache extends AbstractRedisStringCache<Long, User> {
         return 5 * 60L;
     }
 
+    @Override
+    protected Long getLocalExpireSeconds() {
+        return 60L;
+    }
+
     @Override
     protected Map<Long, User> load(List<Long> uidList) {
         List<User> needLoadUserList = userDao.listByIds(uidList);
@@ -1,33 +1,94 @@
 package com.abin.mallchat.common.user.service.impl;
 
+import cn.hutool.core.collection.CollectionUtil;
 import com.abin.mallchat.common.common.constant.MQConstant;
+import com.abin.mallchat.common.common.domain.dto.MemberChangeMessageDTO;
 import com.abin.mallchat.common.common.domain.dto.PushMessageDTO;
 import com.abin.mallchat.common.user.domain.enums.WSBaseResp;
+import com.abin.mallchat.common.user.service.cache.PushRouteCache;
+import com.abin.mallchat.common.websocket.WebSocketProperties;
 import com.abin.mallchat.transaction.service.MQProducer;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 /**
  * Description:
  * Author: <a href="https://github.com/zongzibinbin">abin</a>
  * Date: 2023-08-12
  */
+@Slf4j
 @Service
 public class PushService {
     @Autowired
     private MQProducer mqProducer;
 
+    @Autowired
+    private PushRouteCache pushRouteCache;
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    /**
+     * 推送给指定用户，按路由表只发给用户连接所在的节点
+     */
     public void sendPushMsg(WSBaseResp<?> msg, List<Long> uidList) {
-        mqProducer.sendMsg(MQConstant.PUSH_TOPIC, new PushMessageDTO(uidList, msg));
+        if (CollectionUtil.isEmpty(uidList)) {
+            return;
+        }
+        if (!webSocketProperties.isRoutePushEnabled()) {
+            mqProducer.sendMsg(MQConstant.PUSH_TOPIC, new PushMessageDTO(uidList, msg));
+            return;
+        }
+        Map<String, List<Long>> nodeUidMap;
+        try {
+            nodeUidMap = pushRouteCache.getNodeUidMap(uidList);
+        } catch (Exception e) {//路由表查不到就退回广播，宁可多发不能漏发
+            log.warn("查询推送路由失败，改为广播", e);
+            mqProducer.sendMsg(MQConstant.PUSH_TOPIC, new PushMessageDTO(uidList, msg));
+            return;
+        }
+        Set<Long> routedUids = new HashSet<>();
+        nodeUidMap.forEach((nodeId, nodeUidList) -> {
+            routedUids.addAll(nodeUidList);
+            mqProducer.sendMsg(MQConstant.PUSH_ROUTE_TOPIC + ":" + nodeId, new PushMessageDTO(nodeUidList, msg));
+        });
+        //没有路由的用户可能是路由丢了，也走广播兜底，各节点只推本地在线的连接
+        List<Long> unroutedUids = uidList.stream()
+                .filter(uid -> !routedUids.contains(uid))
+                .distinct()
+                .collect(Collectors.toList());
+        if (CollectionUtil.isNotEmpty(unroutedUids)) {
+            mqProducer.sendMsg(MQConstant.PUSH_TOPIC, new PushMessageDTO(unroutedUids, msg));
+        }
     }
 
     public void sendPushMsg(WSBaseResp<?> msg, Long uid) {
-        mqProducer.sendMsg(MQConstant.PUSH_TOPIC, new PushMessageDTO(uid, msg));
+        sendPushMsg(msg, Collections.singletonList(uid));
     }
 
     public void sendPushMsg(WSBaseResp<?> msg) {
         mqProducer.sendMsg(MQConstant.PUSH_TOPIC, new PushMessageDTO(msg));
     }
+
+    /**
+     * 推送给房间内的在线成员，各节点只遍历本地房间索引里的连接
+     * 房间成员分散在各个节点，热门房间查路由反而更贵，仍然广播
+     */
+    public void sendPushRoomMsg(WSBaseResp<?> msg, Long roomId) {
+        mqProducer.sendMsg(MQConstant.PUSH_TOPIC, PushMessageDTO.buildRoomPush(roomId, msg));
+    }
+
+    /**
+     * 通知所有节点群成员变动，维护本地房间索引
+     */
+    public void sendMemberChange(Long roomId, List<Long> uidList, Integer changeType) {
+        mqProducer.sendMsg(MQConstant.MEMBER_CHANGE_TOPIC, new MemberChangeMessageDTO(roomId, uidList, changeType));
+    }
 }
@@ -2,8 +2,9 @@ package com.abin.mallchat.common.user.service.impl;
 
 import cn.hutool.core.collection.CollectionUtil;
 import cn.hutool.core.util.ObjectUtil;
-import cn.hutool.json.JSONUtil;
-import com.abin.mallchat.common.common.config.ThreadPoolConfig;
+import com.abin.mallchat.common.chat.dao.GroupMemberDao;
+import com.abin.mallchat.common.chat.dao.RoomGroupDao;
+import com.abin.mallchat.common.chat.domain.entity.RoomGroup;
 import com.abin.mallchat.common.common.constant.RedisKey;
 import com.abin.mallchat.common.common.event.UserOfflineEvent;
 import com.abin.mallchat.common.common.event.UserOnlineEvent;
@@ -22,31 +23,34 @@ import com.abin.mallchat.common.user.service.IRoleService;
 import com.abin.mallchat.common.user.service.LoginService;
 import com.abin.mallchat.common.user.service.WebSocketService;
 import com.abin.mallchat.common.user.service.adapter.WSAdapter;
+import com.abin.mallchat.common.user.service.cache.PushRouteCache;
 import com.abin.mallchat.common.user.service.cache.UserCache;
 import com.abin.mallchat.common.websocket.NettyUtil;
+import com.abin.mallchat.common.websocket.WSFanoutEngine;
+import com.abin.mallchat.common.websocket.WSProtocol;
+import com.abin.mallchat.common.websocket.WSPushBatcher;
+import com.abin.mallchat.common.websocket.WebSocketProperties;
 import com.abin.mallchat.transaction.service.MQProducer;
 import com.github.benmanes.caffeine.cache.Cache;
 import com.github.benmanes.caffeine.cache.Caffeine;
+import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
-import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import me.chanjar.weixin.mp.api.WxMpService;
 import me.chanjar.weixin.mp.bean.result.WxMpQrCodeTicket;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
-import java.util.Date;
-import java.util.Objects;
-import java.util.Optional;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * Description: websocket处理类
@@ -59,6 +63,11 @@ public class WebSocketServiceImpl implements WebSocketService {
 
     private static final Duration EXPIRE_TIME = Duration.ofHours(1);
     private static final Long MAX_MUM_SIZE = 10000L;
+    /**
+     * 批量推送的合并key
+     */
+    private static final String BATCH_KEY_ALL = "all";
+    private static final String BATCH_KEY_ROOM = "room:";
     /**
      * 所有请求登录的code与channel关系
      */
@@ -74,6 +83,14 @@ public class WebSocketServiceImpl implements WebSocketService {
      * 所有在线的用户和对应的socket
      */
     private static final ConcurrentHashMap<Long, CopyOnWriteArrayList<Channel>> ONLINE_UID_MAP = new ConcurrentHashMap<>();
+    /**
+     * 本节点房间和在线连接的索引，房间推送只遍历本节点真正在线的连接
+     */
+    private static final ConcurrentHashMap<Long, Set<Channel>> ONLINE_ROOM_MAP = new ConcurrentHashMap<>();
+    /**
+     * 本节点在线用户加入的群聊房间，下线时用来清理房间索引
+     */
+    private static final ConcurrentHashMap<Long, Set<Long>> ONLINE_UID_ROOM_MAP = new ConcurrentHashMap<>();
 
     public static ConcurrentHashMap<Channel, WSChannelExtraDTO> getOnlineMap() {
         return ONLINE_WS_MAP;
@@ -92,14 +109,23 @@ public class WebSocketServiceImpl implements WebSocketService {
     @Autowired
     private ApplicationEventPublisher applicationEventPublisher;
     @Autowired
-    @Qualifier(ThreadPoolConfig.WS_EXECUTOR)
-    private ThreadPoolTaskExecutor threadPoolTaskExecutor;
-    @Autowired
     private UserCache userCache;
     @Autowired
     private IRoleService iRoleService;
     @Autowired
     private MQProducer mqProducer;
+    @Autowired
+    private GroupMemberDao groupMemberDao;
+    @Autowired
+    private RoomGroupDao roomGroupDao;
+    @Autowired
+    private WSFanoutEngine wsFanoutEngine;
+    @Autowired
+    private WSPushBatcher wsPushBatcher;
+    @Autowired
+    private PushRouteCache pushRouteCache;
+    @Autowired
+    private WebSocketProperties webSocketProperties;
 
     /**
      * 处理用户登录请求，需要返回一张带code的二维码
@@ -266,6 +292,45 @@ public class WebSocketServiceImpl implements WebSocketService {
         ONLINE_UID_MAP.putIfAbsent(uid, new CopyOnWriteArrayList<>());
         ONLINE_UID_MAP.get(uid).add(channel);
         NettyUtil.setAttr(channel, NettyUtil.UID, uid);
+        //登记用户所在节点，个人推送按它路由
+        pushRouteCache.online(uid, webSocketProperties.getNodeId());
+        //加入房间索引，同一用户多端登录只加载一次
+        Set<Long> roomIds = ONLINE_UID_ROOM_MAP.get(uid);
+        if (Objects.isNull(roomIds)) {
+            Set<Long> loadRoomIds = ConcurrentHashMap.newKeySet();
+            loadRoomIds.addAll(getGroupRoomIds(uid));
+            roomIds = Optional.ofNullable(ONLINE_UID_ROOM_MAP.putIfAbsent(uid, loadRoomIds)).orElse(loadRoomIds);
+        }
+        roomIds.forEach(roomId -> addRoomChannel(roomId, channel));
+    }
+
+    /**
+     * 获取用户加入的所有群聊房间
+     */
+    private List<Long> getGroupRoomIds(Long uid) {
+        List<Long> groupIds = groupMemberDao.getGroupIdList(uid);
+        if (CollectionUtil.isEmpty(groupIds)) {
+            return Collections.emptyList();
+        }
+        return roomGroupDao.listByIds(groupIds).stream()
+                .map(RoomGroup::getRoomId)
+                .collect(Collectors.toList());
+    }
+
+    private void addRoomChannel(Long roomId, Channel channel) {
+        ONLINE_ROOM_MAP.compute(roomId, (key, channels) -> {
+            Set<Channel> result = Objects.isNull(channels) ? ConcurrentHashMap.newKeySet() : channels;
+            result.add(channel);
+            return result;
+        });
+    }
+
+    private void removeRoomChannel(Long roomId, Channel channel) {
+        //房间在本节点没有连接了就移除，避免索引无限增长
+        ONLINE_ROOM_MAP.computeIfPresent(roomId, (key, channels) -> {
+            channels.remove(channel);
+            return channels.isEmpty() ? null : channels;
+        });
     }
 
     /**
@@ -275,15 +340,45 @@ public class WebSocketServiceImpl implements WebSocketService {
     private boolean offline(Channel channel, Optional<Long> uidOptional) {
         ONLINE_WS_MAP.remove(channel);
         if (uidOptional.isPresent()) {
-            CopyOnWriteArrayList<Channel> channels = ONLINE_UID_MAP.get(uidOptional.get());
+            Long uid = uidOptional.get();
+            CopyOnWriteArrayList<Channel> channels = ONLINE_UID_MAP.get(uid);
             if (CollectionUtil.isNotEmpty(channels)) {
                 channels.removeIf(ch -> Objects.equals(ch, channel));
             }
-            return CollectionUtil.isEmpty(ONLINE_UID_MAP.get(uidOptional.get()));
+            ONLINE_UID_ROOM_MAP.getOrDefault(uid, Collections.emptySet())
+                    .forEach(roomId -> removeRoomChannel(roomId, channel));
+            boolean offlineAll = CollectionUtil.isEmpty(ONLINE_UID_MAP.get(uid));
+            if (offlineAll) {
+                pushRouteCache.offline(uid, webSocketProperties.getNodeId());
+                if (CollectionUtil.isNotEmpty(ONLINE_UID_MAP.get(uid))) {//并发上线了新连接，补回路由
+                    pushRouteCache.online(uid, webSocketProperties.getNodeId());
+                }
+                ONLINE_UID_ROOM_MAP.computeIfPresent(uid, (key, roomIds) -> CollectionUtil.isEmpty(ONLINE_UID_MAP.get(uid)) ? null : roomIds);
+            }
+            return offlineAll;
         }
         return true;
     }
 
+    /**
+     * 定时给本节点在线用户的推送路由续期，长连接活得比路由过期时间久也不会漏推
+     */
+    @Scheduled(cron = "0 0 * * * ?")
+    public void refreshPushRoute() {
+        if (ONLINE_UID_MAP.isEmpty()) {
+            return;
+        }
+        List<Long> uids = ONLINE_UID_MAP.entrySet().stream()
+                .filter(entry -> CollectionUtil.isNotEmpty(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toList());
+        try {
+            pushRouteCache.refresh(uids, webSocketProperties.getNodeId());
+        } catch (Exception e) {
+            log.error("推送路由续期失败", e);
+        }
+    }
+
     /**
      * 扫码登录成功
      *
@@ -335,12 +430,21 @@ public class WebSocketServiceImpl implements WebSocketService {
     //entrySet的值不是快照数据,但是它支持遍历，所以无所谓了，不用快照也行。
     @Override
     public void sendToAllOnline(WSBaseResp<?> wsBaseResp, Long skipUid) {
+        if (Objects.isNull(skipUid) && wsPushBatcher.offer(BATCH_KEY_ALL, wsBaseResp, resp -> doSendToAllOnline(resp, null))) {
+            return;
+        }
+        doSendToAllOnline(wsBaseResp, skipUid);
+    }
+
+    private void doSendToAllOnline(WSBaseResp<?> wsBaseResp, Long skipUid) {
+        List<Channel> channels = new ArrayList<>(ONLINE_WS_MAP.size());
         ONLINE_WS_MAP.forEach((channel, ext) -> {
             if (Objects.nonNull(skipUid) && Objects.equals(ext.getUid(), skipUid)) {
                 return;
             }
-            threadPoolTaskExecutor.execute(() -> sendMsg(channel, wsBaseResp));
+            channels.add(channel);
         });
+        sendMsg(channels, wsBaseResp);
     }
 
     @Override
@@ -355,8 +459,57 @@ public class WebSocketServiceImpl implements WebSocketService {
             log.info("用户：{}不在线", uid);
             return;
         }
-        channels.forEach(channel -> {
-            threadPoolTaskExecutor.execute(() -> sendMsg(channel, wsBaseResp));
+        sendMsg(channels, wsBaseResp);
+    }
+
+    @Override
+    public void sendToUidList(WSBaseResp<?> wsBaseResp, List<Long> uidList) {
+        List<Channel> channels = new ArrayList<>();
+        uidList.forEach(uid -> {
+            CopyOnWriteArrayList<Channel> uidChannels = ONLINE_UID_MAP.get(uid);
+            if (CollectionUtil.isNotEmpty(uidChannels)) {
+                channels.addAll(uidChannels);
+            }
+        });
+        sendMsg(channels, wsBaseResp);
+    }
+
+    @Override
+    public void sendToRoom(WSBaseResp<?> wsBaseResp, Long roomId) {
+        if (wsPushBatcher.offer(BATCH_KEY_ROOM + roomId, wsBaseResp, resp -> doSendToRoom(resp, roomId))) {
+            return;
+        }
+        doSendToRoom(wsBaseResp, roomId);
+    }
+
+    private void doSendToRoom(WSBaseResp<?> wsBaseResp, Long roomId) {
+        Set<Channel> channels = ONLINE_ROOM_MAP.get(roomId);
+        if (CollectionUtil.isEmpty(channels)) {
+            return;
+        }
+        sendMsg(channels, wsBaseResp);
+    }
+
+    @Override
+    public void joinRoom(Long roomId, List<Long> uidList) {
+        uidList.forEach(uid -> {
+            CopyOnWriteArrayList<Channel> channels = ONLINE_UID_MAP.get(uid);
+            if (CollectionUtil.isEmpty(channels)) {//不在本节点在线，上线时会重新加载
+                return;
+            }
+            Optional.ofNullable(ONLINE_UID_ROOM_MAP.get(uid)).ifPresent(roomIds -> roomIds.add(roomId));
+            channels.forEach(channel -> addRoomChannel(roomId, channel));
+        });
+    }
+
+    @Override
+    public void leaveRoom(Long roomId, List<Long> uidList) {
+        uidList.forEach(uid -> {
+            Optional.ofNullable(ONLINE_UID_ROOM_MAP.get(uid)).ifPresent(roomIds -> roomIds.remove(roomId));
+            CopyOnWriteArrayList<Channel> channels = ONLINE_UID_MAP.get(uid);
+            if (CollectionUtil.isNotEmpty(channels)) {
+                channels.forEach(channel -> removeRoomChannel(roomId, channel));
+            }
         });
     }
 
@@ -368,7 +521,33 @@ public class WebSocketServiceImpl implements WebSocketService {
      * @param wsBaseResp
      */
     private void sendMsg(Channel channel, WSBaseResp<?> wsBaseResp) {
-        channel.writeAndFlush(new TextWebSocketFrame(JSONUtil.toJsonStr(wsBaseResp)));
+        WSProtocol protocol = NettyUtil.getProtocol(channel);
+        channel.writeAndFlush(protocol.frame(protocol.encode(wsBaseResp)));
+    }
+
+    /**
+     * 给一批本地channel发送同一条消息
+     * 消息按子协议各序列化一次到池化的buffer，由扇出引擎按EventLoop分批写出
+     *
+     * @param channels
+     * @param wsBaseResp
+     */
+    private void sendMsg(Collection<Channel> channels, WSBaseResp<?> wsBaseResp) {
+        if (CollectionUtil.isEmpty(channels)) {
+            return;
+        }
+        Map<WSProtocol, List<Channel>> protocolMap = new EnumMap<>(WSProtocol.class);
+        for (Channel channel : channels) {
+            protocolMap.computeIfAbsent(NettyUtil.getProtocol(channel), k -> new ArrayList<>()).add(channel);
+        }
+        protocolMap.forEach((protocol, protocolChannels) -> {
+            ByteBuf content = protocol.encode(wsBaseResp);
+            try {
+                wsFanoutEngine.fanout(protocolChannels, content);
+            } finally {
+                content.release();
+            }
+        });
     }
 
 }
@@ -16,6 +16,8 @@ public class NettyUtil {
     public static AttributeKey<String> TOKEN = AttributeKey.valueOf("token");
     public static AttributeKey<String> IP = AttributeKey.valueOf("ip");
     public static AttributeKey<Long> UID = AttributeKey.valueOf("uid");
+    public static AttributeKey<WSSendQueue> SEND_QUEUE = AttributeKey.valueOf("sendQueue");
+    public static AttributeKey<WSProtocol> PROTOCOL = AttributeKey.valueOf("protocol");
     public static AttributeKey<WebSocketServerHandshaker> HANDSHAKER_ATTR_KEY = AttributeKey.valueOf(WebSocketServerHandshaker.class, "HANDSHAKER");
 
     public static <T> void setAttr(Channel channel, AttributeKey<T> attributeKey, T data) {
@@ -26,4 +28,12 @@ public class NettyUtil {
     public static <T> T getAttr(Channel channel, AttributeKey<T> ip) {
         return channel.attr(ip).get();
     }
+
+    /**
+     * 连接握手时协商的子协议，没协商的默认json
+     */
+    public static WSProtocol getProtocol(Channel channel) {
+        WSProtocol protocol = getAttr(channel, PROTOCOL);
+        return protocol == null ? WSProtocol.JSON : protocol;
+    }
 }
@@ -5,12 +5,18 @@ import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelPipeline;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.logging.LogLevel;
 import io.netty.handler.logging.LoggingHandler;
 import io.netty.handler.stream.ChunkedWriteHandler;
@@ -18,6 +24,7 @@ import io.netty.handler.timeout.IdleStateHandler;
 import io.netty.util.NettyRuntime;
 import io.netty.util.concurrent.Future;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 
 import javax.annotation.PostConstruct;
@@ -26,11 +33,14 @@ import javax.annotation.PreDestroy;
 @Slf4j
 @Configuration
 public class NettyWebSocketServer {
-    public static final int WEB_SOCKET_PORT = 8090;
     public static final NettyWebSocketServerHandler NETTY_WEB_SOCKET_SERVER_HANDLER = new NettyWebSocketServerHandler();
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+    @Autowired
+    private WSCompressionSupport wsCompressionSupport;
     // 创建线程池执行器
-    private EventLoopGroup bossGroup = new NioEventLoopGroup(1);
-    private EventLoopGroup workerGroup = new NioEventLoopGroup(NettyRuntime.availableProcessors());
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
 
     /**
      * 启动 ws server
@@ -56,17 +66,24 @@ public class NettyWebSocketServer {
     }
 
     public void run() throws InterruptedException {
+        boolean epoll = useEpoll();
+        int workerThreads = webSocketProperties.getWorkerThreads() > 0 ? webSocketProperties.getWorkerThreads() : NettyRuntime.availableProcessors();
+        bossGroup = epoll ? new EpollEventLoopGroup(webSocketProperties.getBossThreads()) : new NioEventLoopGroup(webSocketProperties.getBossThreads());
+        workerGroup = epoll ? new EpollEventLoopGroup(workerThreads) : new NioEventLoopGroup(workerThreads);
         // 服务器启动引导对象
         ServerBootstrap serverBootstrap = new ServerBootstrap();
         serverBootstrap.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
-                .option(ChannelOption.SO_BACKLOG, 128)
+                .channel(epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class)
+                .option(ChannelOption.SO_BACKLOG, webSocketProperties.getBacklog())
                 .option(ChannelOption.SO_KEEPALIVE, true)
+                .childOption(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(webSocketProperties.getWriteBufferLowWaterMark(), webSocketProperties.getWriteBufferHighWaterMark()))
                 .handler(new LoggingHandler(LogLevel.INFO)) // 为 bossGroup 添加 日志处理器
                 .childHandler(new ChannelInitializer<SocketChannel>() {
                     @Override
                     protected void initChannel(SocketChannel socketChannel) throws Exception {
                         ChannelPipeline pipeline = socketChannel.pipeline();
+                        //合并flush，广播时同一个EventLoop上连续的writeAndFlush只触发一次系统调用
+                        pipeline.addLast(new FlushConsolidationHandler(FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true));
                         //30秒客户端没有向服务器发送心跳则关闭连接
                         pipeline.addLast(new IdleStateHandler(30, 0, 0));
                         // 因为使用http协议，所以需要使用http的编码器，解码器
@@ -81,6 +98,11 @@ public class NettyWebSocketServer {
                         pipeline.addLast(new HttpObjectAggregator(8192));
                         //保存用户ip
                         pipeline.addLast(new HttpHeadersHandler());
+                        //大帧压缩，握手时协商permessage-deflate
+                        if (wsCompressionSupport.isEnabled()) {
+                            pipeline.addLast(wsCompressionSupport.statHandler());
+                            pipeline.addLast(wsCompressionSupport.newExtensionHandler());
+                        }
                         /**
                          * 说明：
                          *  1. 对于 WebSocket，它的数据是以帧frame 的形式传递的；
@@ -88,14 +110,44 @@ public class NettyWebSocketServer {
                          *  3. 浏览器发送请求时： ws://localhost:7000/hello 表示请求的uri
                          *  4. WebSocketServerProtocolHandler 核心功能是把 http协议升级为 ws 协议，保持长连接；
                          *      是通过一个状态码 101 来切换的
+                         *  5. 客户端可以通过子协议协商使用msgpack二进制帧，不协商的仍然是json文本帧
                          */
-                        pipeline.addLast(new WebSocketServerProtocolHandler("/"));
+                        pipeline.addLast(new WebSocketServerProtocolHandler("/", WSProtocol.subprotocols()));
                         // 自定义handler ，处理业务逻辑
                         pipeline.addLast(NETTY_WEB_SOCKET_SERVER_HANDLER);
                     }
                 });
+        if (webSocketProperties.getReceiveBufferSize() > 0) {
+            serverBootstrap.childOption(ChannelOption.SO_RCVBUF, webSocketProperties.getReceiveBufferSize());
+        }
+        if (webSocketProperties.getSendBufferSize() > 0) {
+            serverBootstrap.childOption(ChannelOption.SO_SNDBUF, webSocketProperties.getSendBufferSize());
+        }
+        //SO_REUSEPORT下每个accept线程各自绑定一个监听socket，内核把新连接分摊到这些socket上
+        int bindCount = 1;
+        if (epoll && webSocketProperties.isReusePort()) {
+            serverBootstrap.option(EpollChannelOption.SO_REUSEPORT, true);
+            bindCount = webSocketProperties.getBossThreads();
+        }
         // 启动服务器，监听端口，阻塞直到启动成功
-        serverBootstrap.bind(WEB_SOCKET_PORT).sync();
+        for (int i = 0; i < bindCount; i++) {
+            serverBootstrap.bind(webSocketProperties.getPort()).sync();
+        }
+        log.info("ws server 启动成功 port:{} transport:{} acceptor:{} worker:{}", webSocketProperties.getPort(), epoll ? "epoll" : "nio", bindCount, workerThreads);
+    }
+
+    private boolean useEpoll() {
+        String transport = webSocketProperties.getTransport();
+        if (WebSocketProperties.TRANSPORT_NIO.equalsIgnoreCase(transport)) {
+            return false;
+        }
+        if (Epoll.isAvailable()) {
+            return true;
+        }
+        if (WebSocketProperties.TRANSPORT_EPOLL.equalsIgnoreCase(transport)) {
+            log.warn("native epoll不可用，降级为nio", Epoll.unavailabilityCause());
+        }
+        return false;
     }
 
 }
@@ -9,10 +9,13 @@ import com.abin.mallchat.common.user.domain.vo.request.ws.WSBaseReq;
 import com.abin.mallchat.common.user.domain.vo.request.ws.WSPasswordLoginReq;
 import com.abin.mallchat.common.user.service.LoginService;
 import com.abin.mallchat.common.user.service.WebSocketService;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelHandler.Sharable;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
 import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
 import io.netty.handler.codec.http.websocketx.WebSocketServerProtocolHandler;
 import io.netty.handler.timeout.IdleState;
 import io.netty.handler.timeout.IdleStateEvent;
@@ -21,14 +24,17 @@ import lombok.extern.slf4j.Slf4j;
 
 @Slf4j
 @Sharable
-public class NettyWebSocketServerHandler extends SimpleChannelInboundHandler<TextWebSocketFrame> {
+public class NettyWebSocketServerHandler extends SimpleChannelInboundHandler<WebSocketFrame> {
 
     private WebSocketService webSocketService;
 
+    private WSBizDispatcher wsBizDispatcher;
+
     // 当web客户端连接后，触发该方法
     @Override
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         this.webSocketService = getService();
+        this.wsBizDispatcher = SpringUtil.getBean(WSBizDispatcher.class);
     }
 
     // 客户端离线
@@ -51,8 +57,10 @@ public class NettyWebSocketServerHandler extends SimpleChannelInboundHandler<Tex
     }
 
     private void userOffLine(ChannelHandlerContext ctx) {
-        this.webSocketService.removed(ctx.channel());
-        ctx.channel().close();
+        Channel channel = ctx.channel();
+        //和鉴权走同一个串行队列，保证不会出现先下线后上线的情况
+        this.wsBizDispatcher.executeOnClose(channel, () -> this.webSocketService.removed(channel));
+        channel.close();
     }
 
     /**
@@ -72,15 +80,31 @@ public class NettyWebSocketServerHandler extends SimpleChannelInboundHandler<Tex
                 userOffLine(ctx);
             }
         } else if (evt instanceof WebSocketServerProtocolHandler.HandshakeComplete) {
-            this.webSocketService.connect(ctx.channel());
-            String token = NettyUtil.getAttr(ctx.channel(), NettyUtil.TOKEN);
-            if (StrUtil.isNotBlank(token)) {
-                this.webSocketService.authorize(ctx.channel(), new WSAuthorize(token));
-            }
+            String subprotocol = ((WebSocketServerProtocolHandler.HandshakeComplete) evt).selectedSubprotocol();
+            NettyUtil.setAttr(ctx.channel(), NettyUtil.PROTOCOL, WSProtocol.of(subprotocol));
+            Channel channel = ctx.channel();
+            String token = NettyUtil.getAttr(channel, NettyUtil.TOKEN);
+            this.wsBizDispatcher.execute(channel, () -> {
+                this.webSocketService.connect(channel);
+                if (StrUtil.isNotBlank(token)) {
+                    this.webSocketService.authorize(channel, new WSAuthorize(token));
+                }
+            });
         }
         super.userEventTriggered(ctx, evt);
     }
 
+    /**
+     * 出站缓冲降到低水位以下，写出积压在发送队列里的消息
+     */
+    @Override
+    public void channelWritabilityChanged(ChannelHandlerContext ctx) throws Exception {
+        if (ctx.channel().isWritable()) {
+            SpringUtil.getBean(WSFanoutEngine.class).onWritable(ctx.channel());
+        }
+        super.channelWritabilityChanged(ctx);
+    }
+
     // 处理异常
     @Override
     public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) throws Exception {
@@ -94,30 +118,43 @@ public class NettyWebSocketServerHandler extends SimpleChannelInboundHandler<Tex
 
     // 读取客户端发送的请求报文
     @Override
-    protected void channelRead0(ChannelHandlerContext ctx, TextWebSocketFrame msg) throws Exception {
-        WSBaseReq wsBaseReq = JSONUtil.toBean(msg.text(), WSBaseReq.class);
+    protected void channelRead0(ChannelHandlerContext ctx, WebSocketFrame msg) throws Exception {
+        WSBaseReq wsBaseReq;
+        if (msg instanceof TextWebSocketFrame) {
+            wsBaseReq = WSProtocol.JSON.decode(msg);
+        } else if (msg instanceof BinaryWebSocketFrame) {
+            wsBaseReq = WSProtocol.MSGPACK.decode(msg);
+        } else {
+            return;
+        }
+        //鉴权、登录都是阻塞调用，交给业务线程池处理
+        Channel channel = ctx.channel();
+        this.wsBizDispatcher.execute(channel, () -> handleReq(channel, wsBaseReq));
+    }
+
+    private void handleReq(Channel channel, WSBaseReq wsBaseReq) {
         WSReqTypeEnum wsReqTypeEnum = WSReqTypeEnum.of(wsBaseReq.getType());
         switch (wsReqTypeEnum) {
             case LOGIN:
-                this.webSocketService.handleLoginReq(ctx.channel());
-                log.info("请求二维码 = " + msg.text());
+                this.webSocketService.handleLoginReq(channel);
+                log.info("请求二维码 = " + wsBaseReq);
                 break;
 
             // 心跳包
             case HEARTBEAT:
-            String token = NettyUtil.getAttr(ctx.channel(), NettyUtil.TOKEN); // 获取token
+            String token = NettyUtil.getAttr(channel, NettyUtil.TOKEN); // 获取token
             if (StrUtil.isNotBlank(token)) {
                 SpringUtil.getBean(LoginService.class).renewalTokenIfNecessary(token);  // 更新token有效期
             }
             break;
 
             case PASSWORD_LOGIN:
-                this.webSocketService.passwordLogin(ctx.channel(), JSONUtil.toBean(wsBaseReq.getData().toString(), WSPasswordLoginReq.class));
-                log.info("密码登录请求 = " + msg.text());
+                this.webSocketService.passwordLogin(channel, JSONUtil.toBean(wsBaseReq.getData().toString(), WSPasswordLoginReq.class));
+                log.info("密码登录请求 = " + wsBaseReq);
                 break;
 
             case AUTHORIZE:
-                this.webSocketService.authorize(ctx.channel(), JSONUtil.toBean(wsBaseReq.getData().toString(), WSAuthorize.class));
+                this.webSocketService.authorize(channel, JSONUtil.toBean(wsBaseReq.getData().toString(), WSAuthorize.class));
                 break;
             default:
                 log.info("未知类型");
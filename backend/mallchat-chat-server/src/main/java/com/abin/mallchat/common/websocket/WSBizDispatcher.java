@@ -0,0 +1,163 @@
+package com.abin.mallchat.common.websocket;
+
+import com.abin.mallchat.common.common.config.ThreadPoolConfig;
+import io.netty.channel.Channel;
+import io.netty.util.AttributeKey;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Description: websocket业务分发
+ * 鉴权、登录这类要查redis、mysql、调微信接口的请求不能在netty的IO线程上跑，
+ * 一个慢查询会卡住同一个EventLoop上的所有连接。这里把它们交给有界的业务线程池，
+ * 同一个连接的任务串行执行，保证连接、鉴权、心跳、断开的先后顺序不乱。
+ * 线程池满了不会退回IO线程执行，单个连接的积压也有上限
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Slf4j
+@Component
+public class WSBizDispatcher {
+
+    private static final AttributeKey<SerialExecutor> SERIAL_EXECUTOR = AttributeKey.valueOf("serialExecutor");
+
+    /**
+     * 每次最多连续执行的任务数，执行完让出线程，避免一个连接霸占业务线程
+     */
+    private static final int MAX_BATCH = 16;
+    /**
+     * 单个连接积压的任务数达到这个值就暂停读，降到{@link #RESUME_READ_PENDING}以下再恢复
+     */
+    private static final int PAUSE_READ_PENDING = 32;
+    private static final int RESUME_READ_PENDING = 8;
+    /**
+     * 暂停读之后已经解码出来的帧还会继续进来，积压超过这个值认为客户端在刷帧，直接断开
+     */
+    private static final int MAX_PENDING = 128;
+    /**
+     * 业务线程池满了之后重新提交的间隔，毫秒
+     */
+    private static final long RETRY_DELAY_MILLIS = 100;
+
+    @Autowired
+    @Qualifier(ThreadPoolConfig.WS_BIZ_EXECUTOR)
+    private ThreadPoolTaskExecutor wsBizExecutor;
+
+    /**
+     * 在业务线程池上执行，同一个channel的任务按提交顺序串行
+     * 积压太多会暂停读，还刷就断开连接
+     */
+    public void execute(Channel channel, Runnable task) {
+        getSerialExecutor(channel).execute(task, false);
+    }
+
+    /**
+     * 连接断开后的清理任务，不受积压上限限制，保证一定会执行
+     */
+    public void executeOnClose(Channel channel, Runnable task) {
+        getSerialExecutor(channel).execute(task, true);
+    }
+
+    private SerialExecutor getSerialExecutor(Channel channel) {
+        SerialExecutor serialExecutor = channel.attr(SERIAL_EXECUTOR).get();
+        if (serialExecutor == null) {
+            SerialExecutor newExecutor = new SerialExecutor(channel);
+            serialExecutor = channel.attr(SERIAL_EXECUTOR).setIfAbsent(newExecutor);
+            if (serialExecutor == null) {
+                serialExecutor = newExecutor;
+            }
+        }
+        return serialExecutor;
+    }
+
+    private class SerialExecutor {
+        private final Channel channel;
+        private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        SerialExecutor(Channel channel) {
+            this.channel = channel;
+        }
+
+        void execute(Runnable task, boolean force) {
+            int count = pending.incrementAndGet();
+            if (!force && count > MAX_PENDING) {
+                pending.decrementAndGet();
+                log.warn("websocket连接积压请求过多，断开连接 {}", channel);
+                channel.close();
+                return;
+            }
+            //先暂停读再入队，处理到这个任务的drain一定能看到暂停状态
+            if (count >= PAUSE_READ_PENDING && channel.config().isAutoRead()) {
+                channel.config().setAutoRead(false);
+            }
+            tasks.offer(task);
+            schedule();
+        }
+
+        private void schedule() {
+            if (!running.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                wsBizExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+                //线程池满了不能退回IO线程执行，断开这个连接，队列里的任务（包括下线清理）稍后重新提交
+                running.set(false);
+                log.warn("websocket业务线程池已满，断开连接 {}", channel);
+                channel.close();
+                retryLater();
+            }
+        }
+
+        private void retryLater() {
+            try {
+                channel.eventLoop().schedule(this::schedule, RETRY_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                log.warn("EventLoop已关闭，放弃执行连接剩余的任务 {}", channel);
+            }
+        }
+
+        private void drain() {
+            try {
+                Runnable task;
+                for (int i = 0; i < MAX_BATCH && (task = tasks.poll()) != null; i++) {
+                    pending.decrementAndGet();
+                    try {
+                        task.run();
+                    } catch (Throwable e) {
+                        log.error("websocket业务处理异常", e);
+                    }
+                }
+            } finally {
+                running.set(false);
+                if (!channel.config().isAutoRead()) {
+                    channel.eventLoop().execute(this::resumeReadIfDrained);
+                }
+                if (!tasks.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        /**
+         * 在IO线程上执行，和暂停读的判断串行，不会出现暂停之后没人恢复
+         */
+        private void resumeReadIfDrained() {
+            if (pending.get() <= RESUME_READ_PENDING && !channel.config().isAutoRead() && channel.isActive()) {
+                channel.config().setAutoRead(true);
+            }
+        }
+    }
+}
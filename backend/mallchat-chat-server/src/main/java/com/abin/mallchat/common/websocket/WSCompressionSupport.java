@@ -0,0 +1,141 @@
+package com.abin.mallchat.common.websocket;
+
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.compression.ZlibCodecFactory;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilter;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketExtensionFilterProvider;
+import io.netty.handler.codec.http.websocketx.extensions.WebSocketServerExtensionHandler;
+import io.netty.handler.codec.http.websocketx.extensions.compression.PerMessageDeflateServerExtensionHandshaker;
+import io.netty.util.concurrent.FastThreadLocal;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Description: websocket permessage-deflate压缩
+ * 只压缩超过阈值的帧，小帧压缩收益小还白白耗cpu。客户端握手时没带扩展的照常不压缩
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Component
+public class WSCompressionSupport {
+
+    /**
+     * 压缩帧的RSV1标记
+     */
+    private static final int RSV1 = 0x04;
+
+    /**
+     * 压缩开始时间，编码和写出在同一个IO线程同步完成，用线程变量串起来
+     */
+    private static final FastThreadLocal<Long> COMPRESS_START = new FastThreadLocal<>();
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    /**
+     * 累计压缩的帧数
+     */
+    private final LongAdder compressedFrameCount = new LongAdder();
+    /**
+     * 因为低于阈值跳过压缩的帧数
+     */
+    private final LongAdder skippedFrameCount = new LongAdder();
+    /**
+     * 压缩前后的字节数
+     */
+    private final LongAdder rawBytes = new LongAdder();
+    private final LongAdder compressedBytes = new LongAdder();
+    /**
+     * 压缩耗费的IO线程时间，纳秒
+     */
+    private final LongAdder compressNanos = new LongAdder();
+
+    private final CompressionStatHandler statHandler = new CompressionStatHandler();
+
+    private final WebSocketExtensionFilterProvider filterProvider = new WebSocketExtensionFilterProvider() {
+        @Override
+        public WebSocketExtensionFilter encoderFilter() {
+            return frame -> {
+                int size = frame.content().readableBytes();
+                if (size < webSocketProperties.getCompressionThreshold()) {
+                    skippedFrameCount.increment();
+                    return true;
+                }
+                rawBytes.add(size);
+                COMPRESS_START.set(System.nanoTime());
+                return false;
+            };
+        }
+
+        @Override
+        public WebSocketExtensionFilter decoderFilter() {
+            //客户端发来的压缩帧必须解压
+            return WebSocketExtensionFilter.NEVER_SKIP;
+        }
+    };
+
+    public boolean isEnabled() {
+        return webSocketProperties.isCompressionEnabled();
+    }
+
+    /**
+     * 每个连接一个，握手时协商permessage-deflate
+     */
+    public ChannelHandler newExtensionHandler() {
+        return new WebSocketServerExtensionHandler(new PerMessageDeflateServerExtensionHandshaker(
+                webSocketProperties.getCompressionLevel(),
+                ZlibCodecFactory.isSupportingWindowSizeAndMemLevel(),
+                PerMessageDeflateServerExtensionHandshaker.MAX_WINDOW_SIZE,
+                false, false, filterProvider));
+    }
+
+    /**
+     * 统计压缩后的帧，需要放在压缩处理器前面（靠近head）
+     */
+    public ChannelHandler statHandler() {
+        return statHandler;
+    }
+
+    public long getCompressedFrameCount() {
+        return compressedFrameCount.sum();
+    }
+
+    public long getSkippedFrameCount() {
+        return skippedFrameCount.sum();
+    }
+
+    /**
+     * 压缩率，压缩后字节数/压缩前字节数
+     */
+    public double getCompressionRatio() {
+        long raw = rawBytes.sum();
+        return raw == 0 ? 1D : (double) compressedBytes.sum() / raw;
+    }
+
+    public long getCompressMillis() {
+        return compressNanos.sum() / 1_000_000;
+    }
+
+    @ChannelHandler.Sharable
+    private class CompressionStatHandler extends ChannelOutboundHandlerAdapter {
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) throws Exception {
+            if (msg instanceof WebSocketFrame && (((WebSocketFrame) msg).rsv() & RSV1) != 0) {
+                compressedFrameCount.increment();
+                compressedBytes.add(((WebSocketFrame) msg).content().readableBytes());
+                Long start = COMPRESS_START.get();
+                if (start != null) {
+                    compressNanos.add(System.nanoTime() - start);
+                    COMPRESS_START.remove();
+                }
+            }
+            super.write(ctx, msg, promise);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.abin.mallchat.common.websocket;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.EventLoop;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Description: 广播扇出引擎
+ * 按channel所属的EventLoop分组，每个EventLoop只提交一个批量写任务，
+ * 写操作直接在channel自己的IO线程上执行，不经过业务线程池，也不会因为队列满而静默丢消息。
+ * channel不可写时消息进入连接自己的有界发送队列，慢客户端只会丢自己的旧消息，不会拖垮整个进程
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Slf4j
+@Component
+public class WSFanoutEngine {
+
+    /**
+     * 累计送达的消息数
+     */
+    private final LongAdder deliveredCount = new LongAdder();
+    /**
+     * 累计丢弃的消息数（连接已断开、写失败、EventLoop已关闭）
+     */
+    private final LongAdder droppedCount = new LongAdder();
+    /**
+     * 累计因为channel不可写而进入发送队列的消息数
+     */
+    private final LongAdder queuedCount = new LongAdder();
+    /**
+     * 累计因为慢连接发送队列满而丢弃的消息数
+     */
+    private final LongAdder overflowCount = new LongAdder();
+    /**
+     * 出现过背压且仍然在线的连接数
+     */
+    private final AtomicInteger slowChannelCount = new AtomicInteger();
+
+    /**
+     * 把同一份编码好的内容推送给一批channel
+     *
+     * @param channels 目标channel
+     * @param content  按这批channel协商的子协议编码好的消息内容，所有权仍归调用方，调用方负责release
+     */
+    public void fanout(Collection<Channel> channels, ByteBuf content) {
+        if (channels.isEmpty()) {
+            return;
+        }
+        Map<EventLoop, List<Channel>> loopMap = new IdentityHashMap<>();
+        for (Channel channel : channels) {
+            loopMap.computeIfAbsent(channel.eventLoop(), k -> new ArrayList<>()).add(channel);
+        }
+        FanoutStat stat = new FanoutStat(channels.size());
+        loopMap.forEach((eventLoop, loopChannels) -> {
+            ByteBuf batchContent = content.retainedDuplicate();
+            try {
+                eventLoop.execute(() -> writeBatch(loopChannels, batchContent, stat));
+            } catch (RejectedExecutionException e) {//EventLoop正在关闭
+                batchContent.release();
+                stat.drop(loopChannels.size());
+            }
+        });
+    }
+
+    private void writeBatch(List<Channel> channels, ByteBuf batchContent, FanoutStat stat) {
+        try {
+            for (Channel channel : channels) {
+                if (!channel.isActive()) {
+                    stat.drop(1);
+                    continue;
+                }
+                write(channel, batchContent.retainedDuplicate(), stat);
+            }
+        } finally {
+            batchContent.release();
+        }
+    }
+
+    private void write(Channel channel, ByteBuf content, FanoutStat stat) {
+        WSSendQueue sendQueue = NettyUtil.getAttr(channel, NettyUtil.SEND_QUEUE);
+        //可写并且没有积压，直接写出，保证消息顺序
+        if (channel.isWritable() && (sendQueue == null || sendQueue.isEmpty())) {
+            channel.writeAndFlush(NettyUtil.getProtocol(channel).frame(content)).addListener(stat);
+            return;
+        }
+        if (sendQueue == null) {
+            sendQueue = initSendQueue(channel);
+        }
+        queuedCount.increment();
+        boolean overflow = sendQueue.offer(content, channel.newPromise().addListener(stat));
+        if (overflow) {
+            overflowCount.increment();
+            if (sendQueue.getDroppedCount() == 1) {
+                log.warn("慢连接发送队列已满，开始丢弃旧消息 channel:{} uid:{}", channel.id(), NettyUtil.getAttr(channel, NettyUtil.UID));
+            }
+        }
+    }
+
+    private WSSendQueue initSendQueue(Channel channel) {
+        WSSendQueue sendQueue = new WSSendQueue();
+        NettyUtil.setAttr(channel, NettyUtil.SEND_QUEUE, sendQueue);
+        slowChannelCount.incrementAndGet();
+        channel.closeFuture().addListener(future -> {
+            sendQueue.clear();
+            slowChannelCount.decrementAndGet();
+        });
+        return sendQueue;
+    }
+
+    /**
+     * channel恢复可写，写出积压的消息，在channel的EventLoop上调用
+     */
+    public void onWritable(Channel channel) {
+        WSSendQueue sendQueue = NettyUtil.getAttr(channel, NettyUtil.SEND_QUEUE);
+        if (sendQueue != null) {
+            sendQueue.drain(channel);
+        }
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount.sum();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.sum();
+    }
+
+    public long getQueuedCount() {
+        return queuedCount.sum();
+    }
+
+    public long getOverflowCount() {
+        return overflowCount.sum();
+    }
+
+    public int getSlowChannelCount() {
+        return slowChannelCount.get();
+    }
+
+    /**
+     * 单次广播的统计，所有channel写完后汇报一次结果
+     */
+    private class FanoutStat implements ChannelFutureListener {
+        private final int total;
+        private final AtomicInteger pending;
+        private final AtomicInteger delivered = new AtomicInteger();
+        private final AtomicInteger dropped = new AtomicInteger();
+
+        FanoutStat(int total) {
+            this.total = total;
+            this.pending = new AtomicInteger(total);
+        }
+
+        @Override
+        public void operationComplete(ChannelFuture future) {
+            if (future.isSuccess()) {
+                delivered.incrementAndGet();
+                deliveredCount.increment();
+                countDown(1);
+            } else {
+                drop(1);
+            }
+        }
+
+        void drop(int count) {
+            dropped.addAndGet(count);
+            droppedCount.add(count);
+            countDown(count);
+        }
+
+        private void countDown(int count) {
+            if (pending.addAndGet(-count) != 0) {
+                return;
+            }
+            if (dropped.get() > 0) {
+                log.warn("广播推送完成，总数:{}，送达:{}，丢弃:{}", total, delivered.get(), dropped.get());
+            } else if (log.isDebugEnabled()) {
+                log.debug("广播推送完成，总数:{}，送达:{}", total, delivered.get());
+            }
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package com.abin.mallchat.common.websocket;
+
+import cn.hutool.core.net.NetUtil;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.env.EnvironmentPostProcessor;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Collections;
+
+/**
+ * Description: 生成当前节点的websocket节点id
+ * 定向推送按节点id打tag、建消费组，mq监听注解里要用到，所以在环境准备阶段就要确定下来。
+ * 没有配置时用本机ip+端口生成，重启后保持不变；容器部署建议显式配置成pod名
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+public class WSNodeIdEnvironmentPostProcessor implements EnvironmentPostProcessor {
+
+    public static final String NODE_ID_PROPERTY = "mallchat.websocket.node-id";
+    private static final String PORT_PROPERTY = "mallchat.websocket.port";
+
+    @Override
+    public void postProcessEnvironment(ConfigurableEnvironment environment, SpringApplication application) {
+        if (environment.containsProperty(NODE_ID_PROPERTY)) {
+            return;
+        }
+        //tag和消费组名只允许字母数字和下划线中划线
+        String nodeId = NetUtil.getLocalhostStr().replace('.', '_') + "-" + environment.getProperty(PORT_PROPERTY, "8090");
+        environment.getPropertySources().addLast(new MapPropertySource("websocketNodeId", Collections.singletonMap(NODE_ID_PROPERTY, nodeId)));
+    }
+}
@@ -0,0 +1,135 @@
+package com.abin.mallchat.common.websocket;
+
+import cn.hutool.json.JSONUtil;
+import com.abin.mallchat.common.user.domain.vo.request.ws.WSBaseReq;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.handler.codec.http.websocketx.BinaryWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.TextWebSocketFrame;
+import io.netty.handler.codec.http.websocketx.WebSocketFrame;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.SneakyThrows;
+import org.msgpack.jackson.dataformat.MessagePackFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Description: websocket子协议
+ * 握手时客户端通过Sec-WebSocket-Protocol协商，没带子协议的老客户端走json文本帧；
+ * msgpack走二进制帧，字段和json完全一致，只是编码更紧凑、序列化更省cpu
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@AllArgsConstructor
+@Getter
+public enum WSProtocol {
+    JSON("json") {
+        @Override
+        public ByteBuf encode(Object msg) {
+            return ByteBufUtil.writeUtf8(PooledByteBufAllocator.DEFAULT, JSONUtil.toJsonStr(msg));
+        }
+
+        @Override
+        public WebSocketFrame frame(ByteBuf content) {
+            return new TextWebSocketFrame(content);
+        }
+
+        @Override
+        public WSBaseReq decode(WebSocketFrame frame) {
+            return JSONUtil.toBean(((TextWebSocketFrame) frame).text(), WSBaseReq.class);
+        }
+    },
+    MSGPACK("msgpack") {
+        @Override
+        @SneakyThrows
+        public ByteBuf encode(Object msg) {
+            ByteBuf content = PooledByteBufAllocator.DEFAULT.buffer();
+            try {
+                MSGPACK_MAPPER.writeValue((OutputStream) new ByteBufOutputStream(content), msg);
+                return content;
+            } catch (IOException e) {
+                content.release();
+                throw e;
+            }
+        }
+
+        @Override
+        public WebSocketFrame frame(ByteBuf content) {
+            return new BinaryWebSocketFrame(content);
+        }
+
+        /**
+         * data统一转成json字符串，后续按请求类型解析的逻辑和json协议共用
+         */
+        @Override
+        @SneakyThrows
+        public WSBaseReq decode(WebSocketFrame frame) {
+            JsonNode node;
+            try (InputStream in = new ByteBufInputStream(frame.content())) {
+                node = MSGPACK_MAPPER.readTree(in);
+            }
+            WSBaseReq req = new WSBaseReq();
+            req.setType(node.path("type").isMissingNode() ? null : node.path("type").asInt());
+            JsonNode data = node.path("data");
+            if (!data.isMissingNode() && !data.isNull()) {
+                req.setData(data.isTextual() ? data.asText() : data.toString());
+            }
+            return req;
+        }
+    };
+
+    private static final ObjectMapper MSGPACK_MAPPER = new ObjectMapper(new MessagePackFactory())
+            .findAndRegisterModules()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .disable(SerializationFeature.FAIL_ON_EMPTY_BEANS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+
+    /**
+     * 握手时使用的子协议名
+     */
+    private final String subprotocol;
+
+    /**
+     * 把推送消息序列化成池化的buffer，调用方负责release
+     */
+    public abstract ByteBuf encode(Object msg);
+
+    /**
+     * 用编码好的内容构造对应类型的帧，content的所有权转给帧
+     */
+    public abstract WebSocketFrame frame(ByteBuf content);
+
+    /**
+     * 解析客户端请求
+     */
+    public abstract WSBaseReq decode(WebSocketFrame frame);
+
+    /**
+     * 服务端支持的子协议，握手时按客户端请求的顺序选第一个匹配的
+     */
+    public static String subprotocols() {
+        return String.join(",", Arrays.stream(values()).map(WSProtocol::getSubprotocol).toArray(String[]::new));
+    }
+
+    public static WSProtocol of(String subprotocol) {
+        for (WSProtocol protocol : values()) {
+            if (Objects.equals(protocol.subprotocol, subprotocol)) {
+                return protocol;
+            }
+        }
+        return JSON;
+    }
+}
@@ -0,0 +1,97 @@
+package com.abin.mallchat.common.websocket;
+
+import com.abin.mallchat.common.common.factory.MyThreadFactory;
+import com.abin.mallchat.common.user.domain.enums.WSBaseResp;
+import com.abin.mallchat.common.user.service.adapter.WSAdapter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Description: 推送合并器
+ * 同一个推送目标（房间或全员）在一个小的时间窗口内的多条推送合并成一个批量帧，
+ * 繁忙房间里每个连接的写次数和包数都会大幅下降。窗口内只有一条时仍按原样下发
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Slf4j
+@Component
+public class WSPushBatcher {
+
+    @Autowired
+    private WebSocketProperties webSocketProperties;
+
+    private final ConcurrentHashMap<String, Batch> pendingMap = new ConcurrentHashMap<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            new MyThreadFactory(r -> new Thread(r, "ws-push-batcher")));
+
+    /**
+     * 尝试把推送放进批次
+     *
+     * @param key    推送目标，同一个key的推送合并在一起
+     * @param resp   推送内容
+     * @param sender 批次到期后真正的下发逻辑
+     * @return false表示没开启批量推送，调用方直接下发
+     */
+    public boolean offer(String key, WSBaseResp<?> resp, Consumer<WSBaseResp<?>> sender) {
+        if (!webSocketProperties.isBatchEnabled()) {
+            return false;
+        }
+        boolean[] created = new boolean[1];
+        boolean[] full = new boolean[1];
+        pendingMap.compute(key, (k, batch) -> {
+            if (batch == null) {
+                batch = new Batch(sender);
+                created[0] = true;
+            }
+            batch.respList.add(resp);
+            full[0] = batch.respList.size() >= webSocketProperties.getBatchMaxSize();
+            return batch;
+        });
+        if (full[0]) {
+            flush(key);
+        } else if (created[0]) {
+            scheduler.schedule(() -> flush(key), webSocketProperties.getBatchWindowMillis(), TimeUnit.MILLISECONDS);
+        }
+        return true;
+    }
+
+    private void flush(String key) {
+        Batch batch = pendingMap.remove(key);
+        if (batch == null) {//已经因为攒满提前下发了
+            return;
+        }
+        try {
+            List<WSBaseResp<?>> respList = batch.respList;
+            batch.sender.accept(respList.size() == 1 ? respList.get(0) : WSAdapter.buildBatchResp(respList));
+        } catch (Exception e) {
+            log.error("批量推送失败 key:{}", key, e);
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        scheduler.shutdown();
+        //停机前把还没到期的批次发出去
+        new ArrayList<>(pendingMap.keySet()).forEach(this::flush);
+    }
+
+    private static class Batch {
+        private final Consumer<WSBaseResp<?>> sender;
+        private final List<WSBaseResp<?>> respList = new ArrayList<>();
+
+        Batch(Consumer<WSBaseResp<?>> sender) {
+            this.sender = sender;
+        }
+    }
+}
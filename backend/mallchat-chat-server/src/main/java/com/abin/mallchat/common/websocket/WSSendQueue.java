@@ -0,0 +1,90 @@
+package com.abin.mallchat.common.websocket;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelPromise;
+import lombok.AllArgsConstructor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Description: 单个连接的有界发送队列
+ * channel不可写（出站缓冲超过高水位）时消息先进队列，恢复可写后再按顺序写出；
+ * 队列满了丢弃最旧的消息，避免一个慢客户端把堆撑爆。只在channel所属的EventLoop上访问，不需要加锁
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+public class WSSendQueue {
+    /**
+     * 每个连接最多积压的消息数
+     */
+    public static final int MAX_SIZE = 128;
+
+    private static final IllegalStateException DROPPED_EXCEPTION = new IllegalStateException("慢连接发送队列已满，消息被丢弃");
+
+    private final Deque<PendingFrame> queue = new ArrayDeque<>();
+    /**
+     * 该连接累计被丢弃的消息数
+     */
+    private long droppedCount;
+
+    public boolean isEmpty() {
+        return queue.isEmpty();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * 入队，返回是否因为队列满而丢弃了最旧的消息
+     *
+     * @param content 消息内容，入队后所有权归队列
+     * @param promise 写完成的通知
+     */
+    public boolean offer(ByteBuf content, ChannelPromise promise) {
+        boolean overflow = false;
+        if (queue.size() >= MAX_SIZE) {
+            PendingFrame oldest = queue.poll();
+            oldest.content.release();
+            oldest.promise.tryFailure(DROPPED_EXCEPTION);
+            droppedCount++;
+            overflow = true;
+        }
+        queue.offer(new PendingFrame(content, promise));
+        return overflow;
+    }
+
+    /**
+     * 在channel可写的范围内尽量写出积压的消息
+     */
+    public void drain(Channel channel) {
+        boolean written = false;
+        while (channel.isWritable() && !queue.isEmpty()) {
+            PendingFrame frame = queue.poll();
+            channel.write(NettyUtil.getProtocol(channel).frame(frame.content), frame.promise);
+            written = true;
+        }
+        if (written) {
+            channel.flush();
+        }
+    }
+
+    /**
+     * 连接关闭，释放所有积压的消息
+     */
+    public void clear() {
+        PendingFrame frame;
+        while ((frame = queue.poll()) != null) {
+            frame.content.release();
+            frame.promise.tryFailure(DROPPED_EXCEPTION);
+        }
+    }
+
+    @AllArgsConstructor
+    private static class PendingFrame {
+        private final ByteBuf content;
+        private final ChannelPromise promise;
+    }
+}
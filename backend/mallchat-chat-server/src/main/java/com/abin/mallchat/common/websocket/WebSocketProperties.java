@@ -0,0 +1,103 @@
+package com.abin.mallchat.common.websocket;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Description: websocket服务配置
+ * Author: <a href="https://github.com/zongzibinbin">abin</a>
+ * Date: 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "mallchat.websocket")
+public class WebSocketProperties {
+    public static final String TRANSPORT_AUTO = "auto";
+    public static final String TRANSPORT_NIO = "nio";
+    public static final String TRANSPORT_EPOLL = "epoll";
+
+    /**
+     * 监听端口
+     */
+    private int port = 8090;
+
+    /**
+     * 节点id，定向推送按它路由，不配置时按ip+端口生成
+     *
+     * @see WSNodeIdEnvironmentPostProcessor
+     */
+    private String nodeId;
+
+    /**
+     * 个人推送是否按用户所在节点定向投递，关闭后退回全节点广播
+     */
+    private boolean routePushEnabled = true;
+
+    /**
+     * 传输层实现 auto：linux下有native epoll就用epoll，否则nio；nio；epoll
+     */
+    private String transport = TRANSPORT_AUTO;
+
+    /**
+     * accept线程数，epoll开启SO_REUSEPORT时每个线程绑定一个监听socket，由内核分摊新连接
+     */
+    private int bossThreads = 1;
+
+    /**
+     * IO线程数，0表示使用cpu核数
+     */
+    private int workerThreads = 0;
+
+    /**
+     * accept队列长度，发版后的重连风暴需要足够大，实际值还受内核somaxconn限制
+     */
+    private int backlog = 1024;
+
+    /**
+     * 是否开启SO_REUSEPORT，仅epoll生效
+     */
+    private boolean reusePort = true;
+
+    /**
+     * 连接的收发缓冲区大小，0表示使用系统默认值
+     */
+    private int receiveBufferSize = 0;
+    private int sendBufferSize = 0;
+
+    /**
+     * 每个连接出站缓冲的高低水位，超过高水位channel变为不可写，推送进入连接自己的发送队列
+     */
+    private int writeBufferLowWaterMark = 32 * 1024;
+    private int writeBufferHighWaterMark = 64 * 1024;
+
+    /**
+     * 是否开启permessage-deflate压缩，客户端握手时带了扩展才会生效
+     */
+    private boolean compressionEnabled = false;
+
+    /**
+     * 超过这个字节数的帧才压缩
+     */
+    private int compressionThreshold = 1024;
+
+    /**
+     * 压缩级别 0-9
+     */
+    private int compressionLevel = 6;
+
+    /**
+     * 是否开启批量推送，开启后同一房间（或全员）在时间窗口内的多条推送合并成一帧下发，需要前端支持批量帧
+     */
+    private boolean batchEnabled = false;
+
+    /**
+     * 批量推送的时间窗口，毫秒
+     */
+    private long batchWindowMillis = 20;
+
+    /**
+     * 一帧最多合并的推送数，达到后立即下发
+     */
+    private int batchMaxSize = 50;
+}
@@ -40,6 +40,13 @@ public class RedisUtils {
         return stringRedisTemplate.execute(redisScript, Collections.singletonList(key), String.valueOf(unit.toSeconds(time)));
     }
 
+    /**
+     * 执行lua脚本，脚本对象应该复用，spring会先用EVALSHA执行，服务端没有缓存时才发送脚本内容
+     */
+    public static <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        return stringRedisTemplate.execute(script, keys, args);
+    }
+
     public static Long ZSetGet(String key) {
         return stringRedisTemplate.opsForZSet().zCard(key);
     }
@@ -0,0 +1,41 @@
+package com.abin.frequencycontrol.benchmark;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+
+/**
+ * 按线程数逐档跑压测，每档的结果单独输出一个json，方便和上一次的结果对比
+ * java -jar target/benchmarks.jar [jmh参数]
+ * -Dbenchmark.threads=1,4,16,64 线程档位，默认1,2,4,8,16,32,64
+ * -Dbenchmark.output=target/jmh 结果目录
+ */
+public class BenchmarkRunner {
+    private static final String DEFAULT_THREADS = "1,2,4,8,16,32,64";
+
+    public static void main(String[] args) throws Exception {
+        String threads = System.getProperty("benchmark.threads", DEFAULT_THREADS);
+        File outputDir = new File(System.getProperty("benchmark.output", "target/jmh"));
+        if (!outputDir.exists() && !outputDir.mkdirs()) {
+            throw new IllegalStateException("can not create " + outputDir);
+        }
+        //其他参数（-p、-wi、include正则等）原样交给jmh
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        for (String thread : threads.split(",")) {
+            int threadCount = Integer.parseInt(thread.trim());
+            ChainedOptionsBuilder builder = new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(outputDir, "jmh-result-t" + threadCount + ".json").getPath());
+            if (commandLineOptions.getIncludes().isEmpty()) {
+                builder.include(BenchmarkRunner.class.getPackage().getName() + ".*Benchmark");
+            }
+            new Runner(builder.build()).run();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.abin.frequencycontrol.benchmark;
+
+import cn.hutool.extra.spring.SpringUtil;
+import com.abin.frequencycontrol.domain.dto.FixedWindowDTO;
+import com.abin.frequencycontrol.domain.dto.FrequencyControlDTO;
+import com.abin.frequencycontrol.domain.dto.SlidingWindowDTO;
+import com.abin.frequencycontrol.domain.dto.TokenBucketDTO;
+import com.abin.frequencycontrol.mannager.LocalTokenBucketStore;
+import com.abin.frequencycontrol.mannager.RedisTokenBucketStore;
+import com.abin.frequencycontrol.mannager.TokenBucketManager;
+import com.abin.frequencycontrol.service.frequencycontrol.FrequencyControlUtil;
+import com.abin.frequencycontrol.service.frequencycontrol.strategy.SlidingWindowFrequencyController;
+import com.abin.frequencycontrol.service.frequencycontrol.strategy.TokenBucketFrequencyController;
+import com.abin.frequencycontrol.service.frequencycontrol.strategy.TotalCountWithInFixTimeFrequencyController;
+import com.abin.mallchat.common.FrequencyControlConstant;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 各个{@link com.abin.frequencycontrol.service.frequencycontrol.AbstractFrequencyControlService}策略的压测
+ * 默认启动一个内嵌的redis，-Dbenchmark.redis.host=xxx -Dbenchmark.redis.port=xxx 可以改成压真实的redis。
+ * 每组参数单独fork一个jvm，RedisUtils里静态持有的连接不会串。
+ * 直接调用策略的判断和计数，不走抛异常的路径；放行和拒绝两条路径用budget分开测：
+ * admit-次数上限远大于压测能达到的量，每次都放行；reject-每个key每秒只放行1次，几乎每次都拒绝
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrequencyControlStrategyBenchmark {
+    private static final String REDIS_HOST_PROPERTY = "benchmark.redis.host";
+    private static final String REDIS_PORT_PROPERTY = "benchmark.redis.port";
+    private static final String TOKEN_BUCKET_MODE_PROPERTY = "mallchat.frequency-control.token-bucket.mode";
+    /**
+     * 每个key一秒内放行的次数
+     */
+    private static final int ADMIT_COUNT = 1_000_000_000;
+    private static final int REJECT_COUNT = 1;
+
+    @Param({"TotalCountWithInFixTime", "SlidingWindow", "TokenBucket-redis", "TokenBucket-local"})
+    public String strategy;
+
+    @Param({"hot", "spread"})
+    public String keyMode;
+
+    @Param({"admit", "reject"})
+    public String budget;
+
+    private RedisServer redisServer;
+
+    private AnnotationConfigApplicationContext context;
+
+    private String strategyName;
+
+    private FrequencyControlDTO[] frequencyControls;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        if (Objects.isNull(System.getProperty(REDIS_HOST_PROPERTY))) {
+            int port = freePort();
+            redisServer = new RedisServer(port);
+            redisServer.start();
+            System.setProperty(REDIS_HOST_PROPERTY, "127.0.0.1");
+            System.setProperty(REDIS_PORT_PROPERTY, String.valueOf(port));
+        }
+        strategyName = strategy.startsWith(FrequencyControlConstant.TOKEN_BUCKET) ? FrequencyControlConstant.TOKEN_BUCKET : strategy;
+        if (strategy.startsWith(FrequencyControlConstant.TOKEN_BUCKET)) {
+            System.setProperty(TOKEN_BUCKET_MODE_PROPERTY, strategy.substring(strategy.indexOf('-') + 1));
+        }
+        context = new AnnotationConfigApplicationContext();
+        context.register(RedisConfig.class, SpringUtil.class,
+                TotalCountWithInFixTimeFrequencyController.class, SlidingWindowFrequencyController.class, TokenBucketFrequencyController.class,
+                TokenBucketManager.class, LocalTokenBucketStore.class, RedisTokenBucketStore.class);
+        context.refresh();
+        int size = "hot".equals(keyMode) ? 1 : SingleLimiterBenchmark.KEY_COUNT;
+        frequencyControls = new FrequencyControlDTO[size];
+        for (int i = 0; i < size; i++) {
+            frequencyControls[i] = build("benchmark:" + strategy + ":" + keyMode + ":" + budget + ":" + i);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        if (Objects.nonNull(context)) {
+            context.close();
+        }
+        if (Objects.nonNull(redisServer)) {
+            redisServer.stop();
+        }
+    }
+
+    private FrequencyControlDTO build(String key) {
+        int count = "admit".equals(budget) ? ADMIT_COUNT : REJECT_COUNT;
+        FrequencyControlDTO dto;
+        if (FrequencyControlConstant.TOTAL_COUNT_WITH_IN_FIX_TIME.equals(strategyName)) {
+            FixedWindowDTO fixedWindowDTO = new FixedWindowDTO();
+            fixedWindowDTO.setTime(1);
+            dto = fixedWindowDTO;
+        } else if (FrequencyControlConstant.SLIDING_WINDOW.equals(strategyName)) {
+            SlidingWindowDTO slidingWindowDTO = new SlidingWindowDTO();
+            slidingWindowDTO.setWindowSize(1);
+            slidingWindowDTO.setPeriod(1);
+            dto = slidingWindowDTO;
+        } else {
+            dto = new TokenBucketDTO(count, count);
+        }
+        dto.setKey(key);
+        dto.setCount(count);
+        dto.setUnit(TimeUnit.SECONDS);
+        return dto;
+    }
+
+    @Benchmark
+    public boolean execute() {
+        FrequencyControlDTO[] current = frequencyControls;
+        FrequencyControlDTO dto = current.length == 1 ? current[0] : current[ThreadLocalRandom.current().nextInt(current.length)];
+        return FrequencyControlUtil.tryAcquireWithFrequencyControl(strategyName, dto);
+    }
+
+    private static int freePort() throws Exception {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    @Configuration
+    public static class RedisConfig {
+        @Bean
+        public LettuceConnectionFactory redisConnectionFactory() {
+            return new LettuceConnectionFactory(new RedisStandaloneConfiguration(
+                    System.getProperty(REDIS_HOST_PROPERTY), Integer.parseInt(System.getProperty(REDIS_PORT_PROPERTY))));
+        }
+
+        @Bean
+        public StringRedisTemplate stringRedisTemplate(RedisConnectionFactory redisConnectionFactory) {
+            return new StringRedisTemplate(redisConnectionFactory);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.abin.frequencycontrol.benchmark;
+
+import com.abin.frequencycontrol.service.frequencycontrol.single.FixWindow;
+import com.abin.frequencycontrol.service.frequencycontrol.single.LeakyBucketRateLimiter;
+import com.abin.frequencycontrol.service.frequencycontrol.single.SlideWindow;
+import com.abin.frequencycontrol.service.frequencycontrol.single.TokenBucketRateLimiter;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 单机限流器的压测，hot-所有线程抢同一个限流器，spread-每次随机挑一个key的限流器
+ * 线程数由{@link BenchmarkRunner}逐档传入
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SingleLimiterBenchmark {
+    /**
+     * spread模式下的key数量
+     */
+    static final int KEY_COUNT = 1024;
+    /**
+     * 每秒放行的次数
+     */
+    private static final int QPS = 1000;
+
+    @Param({"FixWindow", "SlideWindow", "TokenBucket", "LeakyBucket"})
+    public String limiter;
+
+    @Param({"hot", "spread"})
+    public String keyMode;
+
+    private BooleanSupplier[] limiters;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        int size = "hot".equals(keyMode) ? 1 : KEY_COUNT;
+        limiters = new BooleanSupplier[size];
+        for (int i = 0; i < size; i++) {
+            limiters[i] = create();
+        }
+    }
+
+    private BooleanSupplier create() {
+        switch (limiter) {
+            case "FixWindow":
+                FixWindow fixWindow = new FixWindow(1000L, QPS);
+                return fixWindow::tryAcquire;
+            case "SlideWindow":
+                SlideWindow slideWindow = new SlideWindow(QPS, 1000L);
+                return slideWindow::tryAcquire;
+            case "TokenBucket":
+                TokenBucketRateLimiter tokenBucket = new TokenBucketRateLimiter(QPS, QPS);
+                return tokenBucket::tryAcquire;
+            case "LeakyBucket":
+                LeakyBucketRateLimiter leakyBucket = new LeakyBucketRateLimiter(QPS, QPS);
+                //返回值>=0都是放行，大于0只是要求调用方等一会，压测里不等
+                return () -> leakyBucket.tryAcquire() >= 0;
+            default:
+                throw new IllegalArgumentException("unknown limiter " + limiter);
+        }
+    }
+
+    @Benchmark
+    public boolean tryAcquire() {
+        BooleanSupplier[] current = limiters;
+        int index = current.length == 1 ? 0 : ThreadLocalRandom.current().nextInt(current.length);
+        return current[index].getAsBoolean();
+    }
+}
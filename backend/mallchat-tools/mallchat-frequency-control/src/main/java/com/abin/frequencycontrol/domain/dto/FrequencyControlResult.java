@@ -0,0 +1,33 @@
+package com.abin.frequencycontrol.domain.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一次频控判断的结果
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FrequencyControlResult {
+    /**
+     * 是否放行
+     */
+    private boolean allowed;
+
+    /**
+     * 被限流的频控Key，放行时为null
+     */
+    private String limitKey;
+
+    /**
+     * 所有频控中最少的剩余次数，被限流时为0
+     */
+    private long remaining;
+
+    /**
+     * 最紧的那个频控恢复一次配额的时间，毫秒时间戳
+     */
+    private long resetTime;
+}
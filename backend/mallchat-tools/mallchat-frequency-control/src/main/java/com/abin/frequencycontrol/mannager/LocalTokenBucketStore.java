@@ -0,0 +1,224 @@
+package com.abin.frequencycontrol.mannager;
+
+import com.abin.frequencycontrol.domain.dto.TokenBucketDTO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 单机令牌桶，每个桶的状态用CAS更新，不加锁。
+ * 闲置到补满的桶和新建的一样，由后台线程定时清理掉，key再多也只保留活跃的桶，请求线程不做扫描
+ */
+@Slf4j
+@Component
+public class LocalTokenBucketStore implements TokenBucketStore {
+    /**
+     * 定时清理间隔，秒
+     */
+    private static final long CLEAN_INTERVAL_SECONDS = 10;
+    /**
+     * 桶超过这个数量时提前触发一次后台清理
+     */
+    private static final int MAX_BUCKET_SIZE = 100000;
+    /**
+     * 提前触发清理的最小间隔，避免桶一直很多时反复扫描
+     */
+    private static final long FORCED_CLEAN_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Map<String, LocalBucket> bucketMap = new ConcurrentHashMap<>();
+
+    private final AtomicLong lastForcedCleanTime = new AtomicLong(System.nanoTime());
+
+    private final ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "local-token-bucket-cleaner");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    public void init() {
+        cleaner.scheduleWithFixedDelay(this::clean, CLEAN_INTERVAL_SECONDS, CLEAN_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        cleaner.shutdownNow();
+    }
+
+    @Override
+    public boolean tryAcquire(Map<String, TokenBucketDTO> tokenBucketMap, int permits) {
+        long now = System.nanoTime();
+        requestCleanIfFull(now);
+        List<LocalBucket> acquired = new ArrayList<>();
+        for (Map.Entry<String, TokenBucketDTO> entry : tokenBucketMap.entrySet()) {
+            LocalBucket bucket = take(entry.getKey(), entry.getValue(), permits, now);
+            if (bucket == null) {
+                //有一个桶不够，前面拿到的还回去
+                acquired.forEach(a -> a.refund(permits));
+                return false;
+            }
+            acquired.add(bucket);
+        }
+        return true;
+    }
+
+    /**
+     * @return 拿到令牌的桶，令牌不够返回null
+     */
+    private LocalBucket take(String key, TokenBucketDTO rule, int permits, long now) {
+        while (true) {
+            LocalBucket bucket = bucketMap.computeIfAbsent(key, k -> new LocalBucket(rule, now));
+            TakeResult result = bucket.take(rule, permits, now);
+            if (result == TakeResult.RETIRED) {//刚好被清理掉了，换个新桶
+                bucketMap.remove(key, bucket);
+                continue;
+            }
+            return result == TakeResult.SUCCESS ? bucket : null;
+        }
+    }
+
+    @Override
+    public boolean canAcquire(Map<String, TokenBucketDTO> tokenBucketMap, int permits) {
+        long now = System.nanoTime();
+        for (Map.Entry<String, TokenBucketDTO> entry : tokenBucketMap.entrySet()) {
+            LocalBucket bucket = bucketMap.get(entry.getKey());
+            //没有桶说明是满的
+            long tokens = bucket == null ? entry.getValue().getCapacity() : (long) bucket.available(entry.getValue(), now);
+            if (tokens < permits) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 桶太多时提前交给后台线程清理，请求线程只做一次CAS
+     */
+    private void requestCleanIfFull(long now) {
+        if (bucketMap.size() < MAX_BUCKET_SIZE) {
+            return;
+        }
+        long last = lastForcedCleanTime.get();
+        if (now - last < FORCED_CLEAN_INTERVAL_NANOS || !lastForcedCleanTime.compareAndSet(last, now)) {
+            return;
+        }
+        try {
+            cleaner.execute(this::clean);
+        } catch (RejectedExecutionException e) {
+            log.warn("local token bucket cleaner is shut down");
+        }
+    }
+
+    private void clean() {
+        try {
+            long now = System.nanoTime();
+            bucketMap.forEach((key, bucket) -> {
+                if (bucket.retireIfIdle(now)) {
+                    bucketMap.remove(key, bucket);
+                }
+            });
+            if (bucketMap.size() >= MAX_BUCKET_SIZE) {
+                log.warn("local token bucket size:{} still exceeds {} after clean", bucketMap.size(), MAX_BUCKET_SIZE);
+            }
+        } catch (Exception e) {
+            log.error("local token bucket clean error", e);
+        }
+    }
+
+    private enum TakeResult {
+        SUCCESS, NOT_ENOUGH, RETIRED
+    }
+
+    private static class LocalBucket {
+        /**
+         * 已经被清理的桶的状态，拿到的线程要换新桶
+         */
+        private static final State RETIRED = new State(0, 0);
+
+        private final AtomicReference<State> state;
+
+        private final long capacity;
+
+        private final long fullRefillNanos;
+
+        LocalBucket(TokenBucketDTO rule, long now) {
+            this.capacity = rule.getCapacity();
+            this.fullRefillNanos = TimeUnit.MILLISECONDS.toNanos(rule.getFullRefillMillis());
+            this.state = new AtomicReference<>(new State(rule.getCapacity(), now));
+        }
+
+        TakeResult take(TokenBucketDTO rule, int permits, long now) {
+            while (true) {
+                State current = state.get();
+                if (current == RETIRED) {
+                    return TakeResult.RETIRED;
+                }
+                double tokens = refill(current, rule, now);
+                if (tokens < permits) {
+                    return TakeResult.NOT_ENOUGH;
+                }
+                State next = new State(tokens - permits, Math.max(now, current.lastRefillTime));
+                if (state.compareAndSet(current, next)) {
+                    return TakeResult.SUCCESS;
+                }
+            }
+        }
+
+        /**
+         * 当前可用的令牌数，已经被清理的桶按满的算
+         */
+        double available(TokenBucketDTO rule, long now) {
+            State current = state.get();
+            return current == RETIRED ? rule.getCapacity() : refill(current, rule, now);
+        }
+
+        void refund(int permits) {
+            while (true) {
+                State current = state.get();
+                if (current == RETIRED) {
+                    return;
+                }
+                State next = new State(Math.min(capacity, current.tokens + permits), current.lastRefillTime);
+                if (state.compareAndSet(current, next)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 闲置到已经补满了就标记为清理，之后拿令牌的线程会换新桶
+         */
+        boolean retireIfIdle(long now) {
+            State current = state.get();
+            return current == RETIRED
+                    || (now - current.lastRefillTime >= fullRefillNanos && state.compareAndSet(current, RETIRED));
+        }
+
+        private static double refill(State current, TokenBucketDTO rule, long now) {
+            double elapsedSeconds = Math.max(0, now - current.lastRefillTime) / 1e9;
+            return Math.min(rule.getCapacity(), current.tokens + elapsedSeconds * rule.getRefillRate());
+        }
+    }
+
+    private static class State {
+        private final double tokens;
+        private final long lastRefillTime;
+
+        State(double tokens, long lastRefillTime) {
+            this.tokens = tokens;
+            this.lastRefillTime = lastRefillTime;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.abin.frequencycontrol.mannager;
+
+import com.abin.frequencycontrol.domain.dto.TokenBucketDTO;
+import com.abin.mallchat.utils.RedisUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 集群令牌桶，桶的状态放在redis的hash里，所有节点共用一个桶。
+ * 一次请求的所有桶在一个lua脚本里完成补充、判断和扣减，桶补满后自动过期
+ */
+@Slf4j
+@Component
+public class RedisTokenBucketStore implements TokenBucketStore {
+
+    /**
+     * KEYS: 桶的Key
+     * ARGV: 令牌数, 是否扣减(1/0), 之后每个桶三个参数: 容量, 每秒补充数, 补满需要的毫秒数
+     * 当前时间取redis的TIME，各节点时钟不一致也不会提前补或者卡住补充
+     * 返回: 0-都够（扣减时已经拿走） 其他-令牌不够的桶的下标(从1开始)
+     */
+    private static final String LUA_TOKEN_BUCKET =
+            "redis.replicate_commands() \n" +
+                    "local time=redis.call('TIME') \n" +
+                    "local now=tonumber(time[1])*1000+math.floor(tonumber(time[2])/1000) \n" +
+                    "local permits=tonumber(ARGV[1]) \n" +
+                    "local tokens={} \n" +
+                    "for i=1,#KEYS do \n" +
+                    "  local capacity=tonumber(ARGV[3*i]) \n" +
+                    "  local rate=tonumber(ARGV[3*i+1]) \n" +
+                    "  local state=redis.call('HMGET',KEYS[i],'tokens','ts') \n" +
+                    "  local t=capacity \n" +
+                    "  if state[1] and state[2] then \n" +
+                    "    local elapsed=math.max(0,now-tonumber(state[2])) \n" +
+                    "    t=math.min(capacity,tonumber(state[1])+elapsed*rate/1000) \n" +
+                    "  end \n" +
+                    "  if t<permits then \n" +
+                    "    return i \n" +
+                    "  end \n" +
+                    "  tokens[i]=t \n" +
+                    "end \n" +
+                    "if ARGV[2]~='1' then \n" +
+                    "  return 0 \n" +
+                    "end \n" +
+                    "for i=1,#KEYS do \n" +
+                    "  redis.call('HMSET',KEYS[i],'tokens',tostring(tokens[i]-permits),'ts',now) \n" +
+                    "  redis.call('PEXPIRE',KEYS[i],ARGV[3*i+2]) \n" +
+                    "end \n" +
+                    "return 0 ";
+
+    private static final RedisScript<Long> TOKEN_BUCKET_SCRIPT = new DefaultRedisScript<>(LUA_TOKEN_BUCKET, Long.class);
+
+    @Override
+    public boolean tryAcquire(Map<String, TokenBucketDTO> tokenBucketMap, int permits) {
+        return evaluate(tokenBucketMap, permits, true);
+    }
+
+    @Override
+    public boolean canAcquire(Map<String, TokenBucketDTO> tokenBucketMap, int permits) {
+        return evaluate(tokenBucketMap, permits, false);
+    }
+
+    private boolean evaluate(Map<String, TokenBucketDTO> tokenBucketMap, int permits, boolean take) {
+        List<String> keys = new ArrayList<>(tokenBucketMap.keySet());
+        List<Object> args = new ArrayList<>();
+        args.add(String.valueOf(permits));
+        args.add(take ? "1" : "0");
+        for (String key : keys) {
+            TokenBucketDTO rule = tokenBucketMap.get(key);
+            args.add(String.valueOf(rule.getCapacity()));
+            args.add(String.valueOf(rule.getRefillRate()));
+            args.add(String.valueOf(rule.getFullRefillMillis()));
+        }
+        Long result = RedisUtils.execute(TOKEN_BUCKET_SCRIPT, keys, args.toArray());
+        if (result != 0L) {
+            log.warn("frequencyControl limit key:{}", keys.get(result.intValue() - 1));
+            return false;
+        }
+        return true;
+    }
+}
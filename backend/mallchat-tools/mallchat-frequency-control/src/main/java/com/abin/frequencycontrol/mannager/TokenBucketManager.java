@@ -1,51 +1,55 @@
 package com.abin.frequencycontrol.mannager;
 
 import com.abin.frequencycontrol.domain.dto.TokenBucketDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * 令牌桶管理，按配置选择桶的存储
+ * redis（默认）-所有节点共用一个桶，限流阈值不会随节点数翻倍
+ * local-每个节点单独计数，不依赖redis
+ */
 @Component
 public class TokenBucketManager {
+    public static final String MODE_LOCAL = "local";
 
-    private final Map<String, TokenBucketDTO> tokenBucketMap = new ConcurrentHashMap<>();
-    private final ReentrantLock lock = new ReentrantLock();
-
-    public void createTokenBucket(String key, long capacity, double refillRate) {
-        lock.lock();
-        try {
-            if (!tokenBucketMap.containsKey(key)) {
-                TokenBucketDTO tokenBucket = new TokenBucketDTO(capacity, refillRate);
-                tokenBucketMap.put(key, tokenBucket);
-            }
-        } finally {
-            lock.unlock();
-        }
-    }
+    public static final String MODE_REDIS = "redis";
+
+    @Value("${mallchat.frequency-control.token-bucket.mode:" + MODE_REDIS + "}")
+    private String mode;
+
+    @Autowired
+    private LocalTokenBucketStore localTokenBucketStore;
+
+    @Autowired
+    private RedisTokenBucketStore redisTokenBucketStore;
 
-    public void removeTokenBucket(String key) {
-        lock.lock();
-        try {
-            tokenBucketMap.remove(key);
-        } finally {
-            lock.unlock();
-        }
+    /**
+     * 从每个桶里各拿走permits个令牌，所有桶都够才拿，有一个不够就都不拿
+     *
+     * @param tokenBucketMap Key-桶的Key Value-桶的规则
+     * @param permits        令牌数
+     * @return true-拿到了 false-令牌不够
+     */
+    public boolean tryAcquire(Map<String, TokenBucketDTO> tokenBucketMap, int permits) {
+        return getStore().tryAcquire(tokenBucketMap, permits);
     }
 
-    public boolean tryAcquire(String key, int permits) {
-        TokenBucketDTO tokenBucket = tokenBucketMap.get(key);
-        if (tokenBucket != null) {
-            return tokenBucket.tryAcquire(permits);
-        }
-        return false;
+    /**
+     * 只判断每个桶是不是都有permits个令牌，不拿
+     *
+     * @param tokenBucketMap Key-桶的Key Value-桶的规则
+     * @param permits        令牌数
+     * @return true-都够 false-有桶不够
+     */
+    public boolean canAcquire(Map<String, TokenBucketDTO> tokenBucketMap, int permits) {
+        return getStore().canAcquire(tokenBucketMap, permits);
     }
 
-    public void deductionToken(String key, int permits) {
-        TokenBucketDTO tokenBucket = tokenBucketMap.get(key);
-        if (tokenBucket != null) {
-            tokenBucket.deductionToken(permits);
-        }
+    private TokenBucketStore getStore() {
+        return MODE_LOCAL.equalsIgnoreCase(mode) ? localTokenBucketStore : redisTokenBucketStore;
     }
 }
@@ -0,0 +1,29 @@
+package com.abin.frequencycontrol.mannager;
+
+import com.abin.frequencycontrol.domain.dto.TokenBucketDTO;
+
+import java.util.Map;
+
+/**
+ * 令牌桶状态的存储
+ */
+public interface TokenBucketStore {
+
+    /**
+     * 从每个桶里各拿走permits个令牌，所有桶都够才拿，有一个不够就都不拿
+     *
+     * @param tokenBucketMap Key-桶的Key Value-桶的规则
+     * @param permits        令牌数
+     * @return true-拿到了 false-令牌不够
+     */
+    boolean tryAcquire(Map<String, TokenBucketDTO> tokenBucketMap, int permits);
+
+    /**
+     * 只判断每个桶是不是都有permits个令牌，不拿
+     *
+     * @param tokenBucketMap Key-桶的Key Value-桶的规则
+     * @param permits        令牌数
+     * @return true-都够 false-有桶不够
+     */
+    boolean canAcquire(Map<String, TokenBucketDTO> tokenBucketMap, int permits);
+}
@@ -33,7 +33,7 @@ public abstract class AbstractFrequencyControlService<K extends FrequencyControl
      * @throws Throwable
      */
     private <T> T executeWithFrequencyControlMap(Map<String, K> frequencyControlMap, SupplierThrowWithoutParam<T> supplier) throws Throwable {
-        if (reachRateLimit(frequencyControlMap)) {
+        if (!tryAcquire(frequencyControlMap)) {
             throw new FrequencyControlException(CommonErrorEnum.FREQUENCY_LIMIT);
         }
         try {
@@ -74,6 +74,23 @@ public abstract class AbstractFrequencyControlService<K extends FrequencyControl
     }
 
 
+    /**
+     * 只做频控判断和计数，不执行业务，被限流时不抛异常
+     *
+     * @param frequencyControl 单个频控对象
+     * @return true-放行 false-被限流
+     */
+    public boolean tryAcquireWithFrequencyControl(K frequencyControl) {
+        AssertUtil.isFalse(ObjectUtils.isEmpty(frequencyControl.getKey()), "限流策略的Key字段不允许出现空值");
+        Map<String, K> frequencyControlMap = Collections.singletonMap(frequencyControl.getKey(), frequencyControl);
+        if (!tryAcquire(frequencyControlMap)) {
+            return false;
+        }
+        addFrequencyControlStatisticsCount(frequencyControlMap);
+        return true;
+    }
+
+
     @FunctionalInterface
     public interface SupplierThrowWithoutParam<T> {
 
@@ -96,6 +113,17 @@ public abstract class AbstractFrequencyControlService<K extends FrequencyControl
         void execute() throws Throwable;
     }
 
+    /**
+     * 判断是否可以执行，默认判断是否达到限流阈值，计数在业务执行后进行。
+     * 能在一次调用里原子完成判断和计数的子类可以重写，同时把{@link #addFrequencyControlStatisticsCount}实现为空
+     *
+     * @param frequencyControlMap 定义的注解频控 Map中的Key-对应redis的单个频控的Key Map中的Value-对应redis的单个频控的Key限制的Value
+     * @return true-可以执行 false-方法被限流
+     */
+    protected boolean tryAcquire(Map<String, K> frequencyControlMap) {
+        return !reachRateLimit(frequencyControlMap);
+    }
+
     /**
      * 是否达到限流阈值 子类实现 每个子类都可以自定义自己的限流逻辑判断
      *
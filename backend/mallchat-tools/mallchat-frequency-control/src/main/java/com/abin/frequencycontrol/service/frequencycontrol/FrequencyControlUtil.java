@@ -34,6 +34,18 @@ public class FrequencyControlUtil {
     }
 
 
+    /**
+     * 只做频控判断和计数，被限流时不抛异常
+     *
+     * @param strategyName     策略名称
+     * @param frequencyControl 单个频控对象
+     * @return true-放行 false-被限流
+     */
+    public static <K extends FrequencyControlDTO> boolean tryAcquireWithFrequencyControl(String strategyName, K frequencyControl) {
+        AbstractFrequencyControlService<K> frequencyController = FrequencyControlStrategyFactory.getFrequencyControllerByName(strategyName);
+        return frequencyController.tryAcquireWithFrequencyControl(frequencyControl);
+    }
+
     /**
      * 多限流策略的编程式调用方法调用方法
      *
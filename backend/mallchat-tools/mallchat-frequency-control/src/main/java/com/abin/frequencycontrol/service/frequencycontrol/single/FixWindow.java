@@ -1,28 +1,40 @@
 package com.abin.frequencycontrol.service.frequencycontrol.single;
 
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 固定窗口，窗口按时间戳对齐
+ * 状态压缩在一个long里：高32位是窗口序号，低32位是窗口内的请求数，CAS更新，不加锁
+ */
 public class FixWindow {
-    public Integer count;  //当前窗口累计请求数
-    public long lastAcquireTime;//最后一次请求时间
-    public Long windowInMillis; //固定窗口时间区间(毫秒)
-    public Integer maxRequests; // 最大请求限制
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
+
+    private final long windowInMillis; //固定窗口时间区间(毫秒)
+    private final int maxRequests; // 最大请求限制
+    private final AtomicLong state = new AtomicLong();
 
     public FixWindow(Long windowInMillis, Integer maxRequests) {
         this.windowInMillis = windowInMillis;
         this.maxRequests = maxRequests;
     }
 
-    public synchronized boolean tryAcquire() {
-        long currentTime = System.currentTimeMillis();  //获取系统当前时间
-        //当前和上次不在同一时间窗口
-        if (currentTime - lastAcquireTime > windowInMillis) {
-            count = 0;  // 计数器清0
-            lastAcquireTime = currentTime;  //开启新的时间窗口
-        } else { //同一窗口内
-            if (count < maxRequests) {  // 小于阀值
-                count++;  //计数统计器加1
+    public boolean tryAcquire() {
+        return tryAcquire(System.currentTimeMillis());
+    }
+
+    boolean tryAcquire(long nowMillis) {
+        //当前窗口序号，只保留低32位，只用来判断是不是同一个窗口
+        long windowId = (nowMillis / windowInMillis) & COUNT_MASK;
+        while (true) {
+            long current = state.get();
+            //不在同一个窗口，计数从0开始
+            long count = (current >>> 32) == windowId ? current & COUNT_MASK : 0;
+            if (count >= maxRequests) {
+                return false;
+            }
+            if (state.compareAndSet(current, (windowId << 32) | (count + 1))) {
                 return true;
             }
         }
-        return false;
     }
 }
@@ -0,0 +1,57 @@
+package com.abin.frequencycontrol.service.frequencycontrol.single;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 按key（比如uid）管理单机限流器，例如
+ * <pre>
+ * KeyedRateLimiterRegistry&lt;Long, TokenBucketRateLimiter&gt; registry =
+ *         new KeyedRateLimiterRegistry&lt;&gt;(uid -&gt; new TokenBucketRateLimiter(10, 5), 1000000, 60000);
+ * registry.get(uid).tryAcquire();
+ * </pre>
+ * 底层是Caffeine：超过idleMillis没访问的限流器过期，数量超过上限按访问频率淘汰。
+ * 清理是摊还的，由Caffeine在后台线程池里做，不会在调用线程上全表扫描。
+ * idleMillis不要小于限流器的窗口，否则清理掉又重建的限流器会多放过请求；
+ * 同理数量到上限时被淘汰的活跃限流器也会重置，maximumSize要按在线key数留足余量
+ *
+ * @param <K> key
+ * @param <L> 限流器
+ */
+public class KeyedRateLimiterRegistry<K, L> {
+
+    private final LoadingCache<K, L> limiterCache;
+
+    /**
+     * @param factory     创建限流器
+     * @param maximumSize 限流器的最大数量
+     * @param idleMillis  闲置多久清理
+     */
+    public KeyedRateLimiterRegistry(Function<K, L> factory, long maximumSize, long idleMillis) {
+        this.limiterCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterAccess(idleMillis, TimeUnit.MILLISECONDS)
+                .build(factory::apply);
+    }
+
+    /**
+     * 获取key对应的限流器，没有就创建
+     */
+    public L get(K key) {
+        return limiterCache.get(key);
+    }
+
+    public long size() {
+        return limiterCache.estimatedSize();
+    }
+
+    /**
+     * 立即执行挂起的清理，测试用
+     */
+    void cleanUp() {
+        limiterCache.cleanUp();
+    }
+}
@@ -1,39 +1,48 @@
 package com.abin.frequencycontrol.service.frequencycontrol.single;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 漏桶，请求按固定间隔流出，桶里排队的请求超过容量就拒绝
+ * 只存最后一个排队请求的流出时间，一个long就是全部状态，CAS更新，不加锁
+ */
 public class LeakyBucketRateLimiter {
-    private final int capacity; // 桶的容量
-    private final int rate; // 出桶速率 (每秒的请求数)
-    private long lastRequestTime; // 上一个请求的时间戳
+    private final long intervalNanos; // 出桶间隔
+    private final long capacityNanos; // 桶装满时最后一个请求需要等的时间
+    private final AtomicLong lastLeakTime; // 最后一个排队请求的流出时间
 
     public LeakyBucketRateLimiter(int capacity, int rate) {
-        this.capacity = capacity;
-        this.rate = rate;
-        this.lastRequestTime = System.currentTimeMillis();
+        if (capacity <= 0 || rate <= 0) {
+            throw new IllegalArgumentException("capacity and rate must be positive");
+        }
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        this.capacityNanos = intervalNanos * capacity;
+        this.lastLeakTime = new AtomicLong(System.nanoTime() - intervalNanos);
     }
 
     /**
      * 尝试请求
      *
-     * @return >0 请求进入桶里，返回的是需要休眠的时间。
+     * @return 0 直接放行，>0 请求进入桶里，返回的是需要休眠的毫秒数，-1 桶满了请求被拒绝
      */
-    public synchronized long tryAcquire() {
-        //当前时间
-        long currentTime = System.currentTimeMillis();
-        //漏桶空的
-        if (currentTime > lastRequestTime) {
-            lastRequestTime = currentTime;
-            return 0; // 请求被允许
-        }
-        //上次取水的间隔时间
-        long elapsedTime = lastRequestTime - currentTime;
-        // 计算桶中的水量
-        int water = (int) elapsedTime * rate / 1000;
-        //水量不超过容量
-        if (water < capacity) {
-            long sleepTime = (1000 / rate) + elapsedTime;
-            lastRequestTime = currentTime + sleepTime;
-            return sleepTime;
+    public long tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
+
+    long tryAcquire(long now) {
+        while (true) {
+            long current = lastLeakTime.get();
+            //桶空了就从当前时间开始排
+            long next = current + intervalNanos - now > 0 ? current + intervalNanos : now;
+            long waitNanos = next - now;
+            if (waitNanos > capacityNanos) {
+                return -1;
+            }
+            if (lastLeakTime.compareAndSet(current, next)) {
+                //向上取整，避免等不够
+                return (waitNanos + TimeUnit.MILLISECONDS.toNanos(1) - 1) / TimeUnit.MILLISECONDS.toNanos(1);
+            }
         }
-        return -1; // 请求被拒绝
     }
 }
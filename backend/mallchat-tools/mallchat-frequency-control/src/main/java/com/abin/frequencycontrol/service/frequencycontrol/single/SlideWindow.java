@@ -1,36 +1,78 @@
 package com.abin.frequencycontrol.service.frequencycontrol.single;
 
-import java.util.LinkedList;
+import java.util.concurrent.atomic.AtomicLongArray;
 
+/**
+ * 滑动窗口，窗口切成固定数量的格子，每个格子一个计数，内存大小和流量无关
+ * 每个格子压缩在一个long里：高32位是格子序号，低32位是格子内的请求数，CAS更新，不加锁。
+ * 先计数再判断总数，超了再退回，并发时只会少放不会多放
+ */
 public class SlideWindow {
+    /**
+     * 默认格子数，窗口的精度是窗口大小/格子数
+     */
+    private static final int DEFAULT_SLOT_COUNT = 10;
+    private static final long COUNT_MASK = 0xFFFFFFFFL;
 
     private final int maxRequests;//最大请求
-    private final long windowInMillis;//窗口范围
-    private LinkedList<Long> requestTimestamps;//每个请求的时间戳
+    private final long slotInMillis;//每个格子的时间范围
+    private final AtomicLongArray slots;
 
     public SlideWindow(int maxRequests, long windowInMillis) {
+        this(maxRequests, windowInMillis, DEFAULT_SLOT_COUNT);
+    }
+
+    public SlideWindow(int maxRequests, long windowInMillis, int slotCount) {
+        if (slotCount <= 0 || windowInMillis < slotCount) {
+            throw new IllegalArgumentException("windowInMillis must be >= slotCount > 0");
+        }
         this.maxRequests = maxRequests;
-        this.windowInMillis = windowInMillis;
-        this.requestTimestamps = new LinkedList<>();
+        this.slotInMillis = windowInMillis / slotCount;
+        this.slots = new AtomicLongArray(slotCount);
+    }
+
+    public boolean tryAcquire() {
+        return tryAcquire(System.currentTimeMillis());
     }
 
-    public synchronized boolean tryAcquire() {
-        long currentTime = System.currentTimeMillis();
-        //清除过期窗口的请求
-        cleanExpiredRequests(currentTime);
-        //统计窗口内的请求数小于总限制
-        if (requestTimestamps.size() < maxRequests) {
-            requestTimestamps.addLast(currentTime);
+    boolean tryAcquire(long nowMillis) {
+        long slotId = (nowMillis / slotInMillis) & COUNT_MASK;
+        int index = (int) (slotId % slots.length());
+        //先在当前格子上计数
+        while (true) {
+            long current = slots.get(index);
+            long count = (current >>> 32) == slotId ? current & COUNT_MASK : 0;
+            if (slots.compareAndSet(index, current, (slotId << 32) | (count + 1))) {
+                break;
+            }
+        }
+        if (countInWindow(slotId) <= maxRequests) {
             return true;
         }
-
-        return false;
+        //超了，把刚才计的退回去，格子已经被下一轮覆盖的话就不用退了
+        while (true) {
+            long current = slots.get(index);
+            if ((current >>> 32) != slotId || (current & COUNT_MASK) == 0) {
+                return false;
+            }
+            if (slots.compareAndSet(index, current, current - 1)) {
+                return false;
+            }
+        }
     }
 
-    private void cleanExpiredRequests(long currentTime) {
-        //由于是LinkedList，头结点就是最早的请求，判断超出时间窗口就移除，留下的都是窗口内的请求
-        while (!requestTimestamps.isEmpty() && (currentTime - requestTimestamps.getFirst() > windowInMillis)) {
-            requestTimestamps.removeFirst();
+    /**
+     * 窗口内所有格子的计数之和，序号不在窗口内的是上一轮的旧格子，不算
+     */
+    private long countInWindow(long slotId) {
+        long sum = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            long value = slots.get(i);
+            long distance = (slotId - (value >>> 32)) & COUNT_MASK;
+            if (distance < slots.length()) {
+                sum += value & COUNT_MASK;
+            }
         }
+        return sum;
     }
 }
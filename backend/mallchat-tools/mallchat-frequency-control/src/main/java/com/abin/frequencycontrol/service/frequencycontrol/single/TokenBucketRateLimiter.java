@@ -1,41 +1,42 @@
 package com.abin.frequencycontrol.service.frequencycontrol.single;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 令牌桶，用GCRA的方式实现：不存令牌数，只存一个"桶被补满的时间"，一个long就是全部状态。
+ * 拿一个令牌就把这个时间往后推一个令牌的间隔，推到超过当前时间+容量*间隔说明令牌不够，CAS更新，不加锁
+ */
 public class TokenBucketRateLimiter {
-    private final int capacity; // 令牌桶容量
-    private final int rate; // 令牌产生速率 (每秒的令牌数)
-    private int tokens; // 当前令牌数量
-    private long lastRefillTime; // 上次令牌补充时间
-    private long left = 0;
+    private final long intervalNanos; // 产生一个令牌需要的时间
+    private final long capacityNanos; // 桶装满的令牌对应的时间
+    private final AtomicLong fullTime; // 桶被补满的时间，不晚于当前时间说明桶是满的
 
     public TokenBucketRateLimiter(int capacity, int rate) {
-        this.capacity = capacity;
-        this.rate = rate;
-        this.tokens = capacity;
-        this.lastRefillTime = System.currentTimeMillis();
-    }
-
-    public synchronized boolean tryAcquire() {
-        refillTokens();
-        if (tokens > 0) {
-            tokens--;
-            return true;
+        if (capacity <= 0 || rate <= 0) {
+            throw new IllegalArgumentException("capacity and rate must be positive");
         }
-        return false;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        this.capacityNanos = intervalNanos * capacity;
+        this.fullTime = new AtomicLong(System.nanoTime());
     }
 
-    //补充令牌
-    private void refillTokens() {
-        long currentTime = System.currentTimeMillis();
-        //当前时间和上次请求时间相差的令牌数
-        long elapsedTime = currentTime - lastRefillTime;
+    public boolean tryAcquire() {
+        return tryAcquire(System.nanoTime());
+    }
 
-        if (elapsedTime > 0) {
-            //需要补充的令牌
-            int newTokens = (int) ((elapsedTime * rate + left) / 1000);
-            left = (elapsedTime * rate + left) % 1000;
-            //令牌不能超过桶的大小
-            tokens = Math.min(tokens + newTokens, capacity);
-            lastRefillTime = currentTime;
+    boolean tryAcquire(long now) {
+        while (true) {
+            long current = fullTime.get();
+            //桶已经满了就从当前时间开始算
+            long base = current - now > 0 ? current : now;
+            long next = base + intervalNanos;
+            if (next - now > capacityNanos) {
+                return false;
+            }
+            if (fullTime.compareAndSet(current, next)) {
+                return true;
+            }
         }
     }
 }
@@ -2,58 +2,130 @@ package com.abin.frequencycontrol.service.frequencycontrol.strategy;
 
 import com.abin.mallchat.common.FrequencyControlConstant;
 import com.abin.mallchat.utils.RedisUtils;
+import com.abin.frequencycontrol.domain.dto.FrequencyControlResult;
 import com.abin.frequencycontrol.domain.dto.SlidingWindowDTO;
 import com.abin.frequencycontrol.service.frequencycontrol.AbstractFrequencyControlService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 
 /**
  * 抽象类频控服务 -使用redis实现 滑动窗口是一种更加灵活的频率控制策略，它在一个滑动的时间窗口内限制操作的发生次数
+ * 一次请求的所有频控Key在一个lua脚本里完成清理过期记录、计数、判断和记录，判断和计数之间没有并发窗口
  */
 @Slf4j
 @Service
 public class SlidingWindowFrequencyController extends AbstractFrequencyControlService<SlidingWindowDTO> {
+
+    /**
+     * KEYS: 频控Key
+     * ARGV: 当前毫秒时间, 本次请求的member, 是否记录(1/0), 之后每个Key两个参数: 次数上限, 窗口长度(毫秒)
+     * 返回: {是否放行, 被限流的Key下标(从1开始), 剩余次数, 恢复时间}
+     * 有一个Key超限就整体不记录，所有Key都通过才一起记录
+     */
+    private static final String LUA_SLIDING_WINDOW =
+            "local now=tonumber(ARGV[1]) \n" +
+                    "local member=ARGV[2] \n" +
+                    "local record=ARGV[3]=='1' \n" +
+                    "local counts={} \n" +
+                    "for i=1,#KEYS do \n" +
+                    "  local limit=tonumber(ARGV[2*i+2]) \n" +
+                    "  local length=tonumber(ARGV[2*i+3]) \n" +
+                    "  redis.call('ZREMRANGEBYSCORE',KEYS[i],0,now-length) \n" +
+                    "  local count=redis.call('ZCARD',KEYS[i]) \n" +
+                    "  if count>=limit then \n" +
+                    "    local oldest=redis.call('ZRANGE',KEYS[i],0,0,'WITHSCORES') \n" +
+                    "    local reset=now+length \n" +
+                    "    if oldest[2] then reset=tonumber(oldest[2])+length end \n" +
+                    "    return {0,i,0,reset} \n" +
+                    "  end \n" +
+                    "  counts[i]=count \n" +
+                    "end \n" +
+                    "local remaining=-1 \n" +
+                    "local reset=now \n" +
+                    "for i=1,#KEYS do \n" +
+                    "  local limit=tonumber(ARGV[2*i+2]) \n" +
+                    "  local length=tonumber(ARGV[2*i+3]) \n" +
+                    "  local left=limit-counts[i] \n" +
+                    "  if record then \n" +
+                    "    redis.call('ZADD',KEYS[i],now,member) \n" +
+                    "    redis.call('PEXPIRE',KEYS[i],length) \n" +
+                    "    left=left-1 \n" +
+                    "  end \n" +
+                    "  if remaining<0 or left<remaining then \n" +
+                    "    remaining=left \n" +
+                    "    local oldest=redis.call('ZRANGE',KEYS[i],0,0,'WITHSCORES') \n" +
+                    "    reset=now+length \n" +
+                    "    if oldest[2] then reset=tonumber(oldest[2])+length end \n" +
+                    "  end \n" +
+                    "end \n" +
+                    "return {1,0,remaining,reset} ";
+
+    private static final RedisScript<List> SLIDING_WINDOW_SCRIPT = new DefaultRedisScript<>(LUA_SLIDING_WINDOW, List.class);
+
+    /**
+     * 判断并记录一次请求，所有频控都通过才记录
+     *
+     * @param frequencyControlMap 定义的注解频控 Map中的Key-对应redis的单个频控的Key Map中的Value-对应redis的单个频控的Key限制的Value
+     * @return 是否放行、剩余次数和恢复时间
+     */
+    public FrequencyControlResult acquire(Map<String, SlidingWindowDTO> frequencyControlMap) {
+        return evaluate(frequencyControlMap, true);
+    }
+
+    @Override
+    protected boolean tryAcquire(Map<String, SlidingWindowDTO> frequencyControlMap) {
+        return acquire(frequencyControlMap).isAllowed();
+    }
+
+    /**
+     * 只判断不记录
+     */
     @Override
     protected boolean reachRateLimit(Map<String, SlidingWindowDTO> frequencyControlMap) {
-        // 批量获取redis统计的值
-        List<String> frequencyKeys = new ArrayList<>(frequencyControlMap.keySet());
-        for (int i = 0; i < frequencyKeys.size(); i++) {
-            String key = frequencyKeys.get(i);
-            SlidingWindowDTO controlDTO = frequencyControlMap.get(key);
-            // 获取窗口时间内计数
-            Long count = RedisUtils.ZSetGet(key);
-            int frequencyControlCount = controlDTO.getCount();
-            if (Objects.nonNull(count) && count >= frequencyControlCount) {
-                //频率超过了
-                log.warn("frequencyControl limit key:{},count:{}", key, count);
-                return true;
-            }
-        }
-        return false;
+        return !evaluate(frequencyControlMap, false).isAllowed();
     }
 
+    /**
+     * 记录已经在{@link #tryAcquire}里和判断一起完成了
+     */
     @Override
     protected void addFrequencyControlStatisticsCount(Map<String, SlidingWindowDTO> frequencyControlMap) {
+    }
+
+    private FrequencyControlResult evaluate(Map<String, SlidingWindowDTO> frequencyControlMap, boolean record) {
         List<String> frequencyKeys = new ArrayList<>(frequencyControlMap.keySet());
-        for (int i = 0; i < frequencyKeys.size(); i++) {
-            String key = frequencyKeys.get(i);
+        long current = System.currentTimeMillis();
+        List<Object> args = new ArrayList<>();
+        args.add(String.valueOf(current));
+        // 同一毫秒内的多次请求也要各算一次，member不能只用时间戳
+        args.add(current + "-" + ThreadLocalRandom.current().nextLong());
+        args.add(record ? "1" : "0");
+        for (String key : frequencyKeys) {
             SlidingWindowDTO controlDTO = frequencyControlMap.get(key);
-            // 窗口最小周期转秒
+            // 窗口最小周期转毫秒
             long period = controlDTO.getUnit().toMillis(controlDTO.getPeriod());
-            long current = System.currentTimeMillis();
-            // 窗口大小 单位 秒
+            // 窗口大小 单位 毫秒
             long length = period * controlDTO.getWindowSize();
-            long start = current - length;
-//            long expireTime = length + period;
-            RedisUtils.ZSetAddAndExpire(key, start, length, current);
+            args.add(String.valueOf(controlDTO.getCount()));
+            args.add(String.valueOf(length));
+        }
+        List<Long> result = RedisUtils.execute(SLIDING_WINDOW_SCRIPT, frequencyKeys, args.toArray());
+        boolean allowed = result.get(0) == 1L;
+        String limitKey = allowed ? null : frequencyKeys.get(result.get(1).intValue() - 1);
+        if (!allowed) {
+            //频率超过了
+            log.warn("frequencyControl limit key:{},resetTime:{}", limitKey, result.get(3));
         }
+        return new FrequencyControlResult(allowed, limitKey, result.get(2), result.get(3));
     }
 
     @Override
@@ -8,13 +8,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.util.ArrayList;
-import java.util.List;
 import java.util.Map;
 
 
 /**
- * 抽象类频控服务 -使用redis实现 维护一个令牌桶来限制操作的发生次数
+ * 抽象类频控服务 -维护一个令牌桶来限制操作的发生次数，桶的存储见{@link TokenBucketManager}
  */
 @Slf4j
 @Service
@@ -23,28 +21,27 @@ public class TokenBucketFrequencyController extends AbstractFrequencyControlServ
     @Autowired
     private TokenBucketManager tokenBucketManager;
 
+    /**
+     * 令牌桶的判断和扣减是一步完成的，放行时已经从每个桶里拿走了 1 个令牌
+     */
+    @Override
+    protected boolean tryAcquire(Map<String, TokenBucketDTO> frequencyControlMap) {
+        return tokenBucketManager.tryAcquire(frequencyControlMap, 1);
+    }
+
+    /**
+     * 只判断不拿令牌
+     */
     @Override
     protected boolean reachRateLimit(Map<String, TokenBucketDTO> frequencyControlMap) {
-        // 批量获取redis统计的值
-        List<String> frequencyKeys = new ArrayList<>(frequencyControlMap.keySet());
-        for (int i = 0; i < frequencyKeys.size(); i++) {
-            String key = frequencyKeys.get(i);
-            // 获取 1 个令牌
-            return tokenBucketManager.tryAcquire(key, 1);
-        }
-        return false;
+        return !tokenBucketManager.canAcquire(frequencyControlMap, 1);
     }
 
+    /**
+     * 令牌已经在{@link #tryAcquire}里扣减了
+     */
     @Override
     protected void addFrequencyControlStatisticsCount(Map<String, TokenBucketDTO> frequencyControlMap) {
-        List<String> frequencyKeys = new ArrayList<>(frequencyControlMap.keySet());
-        for (int i = 0; i < frequencyKeys.size(); i++) {
-            String key = frequencyKeys.get(i);
-            TokenBucketDTO tokenBucketDTO = frequencyControlMap.get(key);
-            tokenBucketManager.createTokenBucket(key, tokenBucketDTO.getCapacity(), tokenBucketDTO.getRefillRate());
-            // 扣减 1 个令牌
-            tokenBucketManager.deductionToken(key, 1);
-        }
     }
 
     @Override
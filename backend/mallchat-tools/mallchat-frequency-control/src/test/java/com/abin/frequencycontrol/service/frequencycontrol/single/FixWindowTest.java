@@ -0,0 +1,51 @@
+package com.abin.frequencycontrol.service.frequencycontrol.single;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FixWindowTest {
+
+    @Test
+    public void limitWithinWindow() {
+        FixWindow fixWindow = new FixWindow(1000L, 3);
+        assertTrue(fixWindow.tryAcquire(5000));
+        assertTrue(fixWindow.tryAcquire(5500));
+        assertTrue(fixWindow.tryAcquire(5999));
+        assertFalse(fixWindow.tryAcquire(5999));
+    }
+
+    @Test
+    public void resetOnWindowRollover() {
+        FixWindow fixWindow = new FixWindow(1000L, 2);
+        assertTrue(fixWindow.tryAcquire(5000));
+        assertTrue(fixWindow.tryAcquire(5000));
+        assertFalse(fixWindow.tryAcquire(5999));
+        //下一个窗口的第一个请求就能放行
+        assertTrue(fixWindow.tryAcquire(6000));
+        assertTrue(fixWindow.tryAcquire(6001));
+        assertFalse(fixWindow.tryAcquire(6002));
+        //跳过若干窗口后同样重新计数
+        assertTrue(fixWindow.tryAcquire(60000));
+    }
+
+    @Test
+    public void windowIdWrapsAround() {
+        FixWindow fixWindow = new FixWindow(1L, 1);
+        //窗口序号只保留低32位，相差2^32的窗口不能被当成同一个
+        long base = 1L << 32;
+        assertTrue(fixWindow.tryAcquire(base + 7));
+        assertFalse(fixWindow.tryAcquire(base + 7));
+        assertTrue(fixWindow.tryAcquire(base + 8));
+    }
+
+    @Test
+    public void concurrentAcquireNeverExceedsLimit() throws Exception {
+        FixWindow fixWindow = new FixWindow(1000L, 500);
+        long now = 10_000;
+        int passed = ConcurrentAcquire.run(1000, () -> fixWindow.tryAcquire(now));
+        assertEquals(500, passed);
+    }
+}
@@ -0,0 +1,34 @@
+package com.abin.frequencycontrol.service.frequencycontrol.single;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedRateLimiterRegistryTest {
+
+    @Test
+    public void sameKeySameLimiter() throws Exception {
+        KeyedRateLimiterRegistry<Long, FixWindow> registry =
+                new KeyedRateLimiterRegistry<>(uid -> new FixWindow(1000L, 10), 1000, 60000);
+        Set<FixWindow> limiters = ConcurrentHashMap.newKeySet();
+        ConcurrentAcquire.run(100, () -> limiters.add(registry.get(1L)));
+        assertEquals(1, limiters.size());
+        assertSame(registry.get(1L), limiters.iterator().next());
+    }
+
+    @Test
+    public void sizeIsBounded() throws Exception {
+        KeyedRateLimiterRegistry<Long, FixWindow> registry =
+                new KeyedRateLimiterRegistry<>(uid -> new FixWindow(1000L, 10), 1000, 60000);
+        for (long uid = 0; uid < 100_000; uid++) {
+            registry.get(uid).tryAcquire();
+        }
+        registry.cleanUp();
+        assertTrue(registry.size() <= 1000);
+    }
+}
@@ -0,0 +1,43 @@
+package com.abin.frequencycontrol.service.frequencycontrol.single;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class LeakyBucketRateLimiterTest {
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    public void queueUpToCapacity() {
+        LeakyBucketRateLimiter limiter = new LeakyBucketRateLimiter(3, 10);
+        long start = System.nanoTime();
+        assertEquals(0, limiter.tryAcquire(start));
+        assertEquals(100, limiter.tryAcquire(start));
+        assertEquals(200, limiter.tryAcquire(start));
+        assertEquals(300, limiter.tryAcquire(start));
+        assertEquals(-1, limiter.tryAcquire(start));
+    }
+
+    @Test
+    public void leakAtRate() {
+        LeakyBucketRateLimiter limiter = new LeakyBucketRateLimiter(3, 10);
+        long start = System.nanoTime();
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire(start);
+        }
+        assertEquals(-1, limiter.tryAcquire(start + INTERVAL - 1));
+        assertEquals(300, limiter.tryAcquire(start + INTERVAL));
+        //桶漏空之后重新直接放行
+        assertEquals(0, limiter.tryAcquire(start + 10 * INTERVAL));
+    }
+
+    @Test
+    public void concurrentAcquireNeverExceedsCapacity() throws Exception {
+        LeakyBucketRateLimiter limiter = new LeakyBucketRateLimiter(500, 10);
+        long now = System.nanoTime();
+        //一个直接放行，加上排队的500个
+        assertEquals(501, ConcurrentAcquire.run(1000, () -> limiter.tryAcquire(now) >= 0));
+    }
+}
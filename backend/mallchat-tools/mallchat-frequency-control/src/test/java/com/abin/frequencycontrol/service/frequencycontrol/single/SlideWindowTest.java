@@ -0,0 +1,82 @@
+package com.abin.frequencycontrol.service.frequencycontrol.single;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SlideWindowTest {
+
+    /**
+     * 连续尝试直到被拒绝，返回放行次数
+     */
+    private static int drain(SlideWindow slideWindow, long now) {
+        int passed = 0;
+        while (slideWindow.tryAcquire(now)) {
+            passed++;
+        }
+        return passed;
+    }
+
+    @Test
+    public void limitWithinWindow() {
+        SlideWindow slideWindow = new SlideWindow(10, 1000L, 10);
+        assertEquals(10, drain(slideWindow, 0));
+        assertFalse(slideWindow.tryAcquire(500));
+        assertFalse(slideWindow.tryAcquire(999));
+    }
+
+    @Test
+    public void slotsSlideOutOfWindow() {
+        SlideWindow slideWindow = new SlideWindow(10, 1000L, 10);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(slideWindow.tryAcquire(0));
+        }
+        for (int i = 0; i < 6; i++) {
+            assertTrue(slideWindow.tryAcquire(500));
+        }
+        assertFalse(slideWindow.tryAcquire(999));
+        //第0格滑出窗口，只腾出它的4个名额
+        assertEquals(4, drain(slideWindow, 1000));
+        //第5格也滑出后再腾出6个
+        assertEquals(6, drain(slideWindow, 1500));
+    }
+
+    @Test
+    public void rejectedRequestsAreRolledBack() {
+        SlideWindow slideWindow = new SlideWindow(10, 1000L, 10);
+        for (int i = 0; i < 5; i++) {
+            assertTrue(slideWindow.tryAcquire(0));
+        }
+        for (int i = 0; i < 5; i++) {
+            assertTrue(slideWindow.tryAcquire(900));
+        }
+        //被拒绝的请求要退回计数，不然第9格会一直占着名额
+        for (int i = 0; i < 100; i++) {
+            assertFalse(slideWindow.tryAcquire(900));
+        }
+        assertEquals(5, drain(slideWindow, 1000));
+        assertEquals(0, drain(slideWindow, 1899));
+        assertEquals(5, drain(slideWindow, 1900));
+    }
+
+    @Test
+    public void staleSlotsFromPreviousRoundAreIgnored() {
+        SlideWindow slideWindow = new SlideWindow(10, 1000L, 10);
+        assertEquals(10, drain(slideWindow, 300));
+        //同一个格子下一轮复用时覆盖旧计数
+        assertEquals(10, drain(slideWindow, 1300));
+        assertEquals(10, drain(slideWindow, 5300));
+    }
+
+    @Test
+    public void concurrentAcquireNeverExceedsLimit() throws Exception {
+        SlideWindow slideWindow = new SlideWindow(500, 1000L, 10);
+        long now = 10_000;
+        int passed = ConcurrentAcquire.run(1000, () -> slideWindow.tryAcquire(now));
+        assertTrue(passed <= 500);
+        //并发冲突时只会少放，回退干净的话剩下的名额还能补上，总数正好是上限
+        assertEquals(500, passed + drain(slideWindow, now));
+    }
+}
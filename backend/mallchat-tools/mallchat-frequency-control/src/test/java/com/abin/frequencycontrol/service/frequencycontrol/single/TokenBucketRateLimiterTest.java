@@ -0,0 +1,55 @@
+package com.abin.frequencycontrol.service.frequencycontrol.single;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBucketRateLimiterTest {
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private static int drain(TokenBucketRateLimiter limiter, long now) {
+        int passed = 0;
+        while (limiter.tryAcquire(now)) {
+            passed++;
+        }
+        return passed;
+    }
+
+    @Test
+    public void burstUpToCapacity() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 10);
+        long start = System.nanoTime();
+        assertEquals(10, drain(limiter, start));
+    }
+
+    @Test
+    public void refillAtRate() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 10);
+        long start = System.nanoTime();
+        assertEquals(10, drain(limiter, start));
+        assertFalse(limiter.tryAcquire(start + INTERVAL - 1));
+        assertTrue(limiter.tryAcquire(start + INTERVAL));
+        assertFalse(limiter.tryAcquire(start + INTERVAL));
+        assertEquals(3, drain(limiter, start + 4 * INTERVAL));
+    }
+
+    @Test
+    public void idleDoesNotOverfill() {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(10, 10);
+        long start = System.nanoTime();
+        assertEquals(10, drain(limiter, start));
+        //闲置再久桶也只有容量那么多令牌
+        assertEquals(10, drain(limiter, start + TimeUnit.MINUTES.toNanos(10)));
+    }
+
+    @Test
+    public void concurrentAcquireNeverExceedsCapacity() throws Exception {
+        TokenBucketRateLimiter limiter = new TokenBucketRateLimiter(500, 10);
+        long now = System.nanoTime();
+        assertEquals(500, ConcurrentAcquire.run(1000, () -> limiter.tryAcquire(now)));
+    }
+}